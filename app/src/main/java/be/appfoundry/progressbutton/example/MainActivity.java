@@ -6,6 +6,7 @@ import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.animation.LinearInterpolator;
 
 import java.util.concurrent.TimeUnit;
 
@@ -14,7 +15,6 @@ import butterknife.Bind;
 import butterknife.ButterKnife;
 import rx.Observable;
 import rx.Subscriber;
-import rx.android.schedulers.AndroidSchedulers;
 import rx.schedulers.Schedulers;
 
 public class MainActivity extends AppCompatActivity {
@@ -57,6 +57,9 @@ public class MainActivity extends AppCompatActivity {
         progressButton2.setIndeterminate(false);
         progressButton2.setAnimationStep(1);
         progressButton2.setMaxProgress(10);
+        // updates arrive once per second, animate between them at a constant speed
+        progressButton2.setProgressDuration(1000);
+        progressButton2.setProgressInterpolator(new LinearInterpolator());
 
         progressButton2.setOnTouchListener(new View.OnTouchListener() {
             @Override
@@ -73,7 +76,12 @@ public class MainActivity extends AppCompatActivity {
                             @Override
                             public void onCompleted() {
                                 unsubscribe();
-                                progressButton2.setColor(Color.parseColor("#117700"));
+                                progressButton2.post(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        progressButton2.setColor(Color.parseColor("#117700"));
+                                    }
+                                });
                             }
 
                             @Override
@@ -84,7 +92,7 @@ public class MainActivity extends AppCompatActivity {
                             @Override
                             public void onNext(Long aLong) {
                                 progress += progressButton2.getAnimationStep();
-                                progressButton2.setProgress(progress);
+                                progressButton2.postProgress(progress, true);
                                 if (progress >= progressButton2.getMaxProgress()) {
                                     onCompleted();
                                 }
@@ -93,7 +101,6 @@ public class MainActivity extends AppCompatActivity {
 
                         interval.subscribeOn(Schedulers.newThread())
                                 .startWith(0l)
-                                .observeOn(AndroidSchedulers.mainThread())
                                 .subscribe(subscriber);
                         break;
                 }
@@ -0,0 +1,47 @@
+package be.appfoundry.progressbutton;
+
+import android.graphics.RectF;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+
+import be.appfoundry.progressbutton.util.ArcGeometry;
+
+/**
+ * Runs the arc geometry of the dirty rectangles thousands of times and fails if it allocates. It
+ * needs the framework {@link RectF}, so it runs on a device instead of with the JVM allocation
+ * tests.
+ */
+public class ArcGeometryAllocationBenchmark extends AndroidTestCase {
+
+    private static final int WARM_UP_FRAMES = 10000;
+    private static final int FRAMES = 10000;
+    private static final float CENTER = 50;
+    private static final float RADIUS = 50;
+    private static final int FULL_CIRCLE = 360;
+    private static final int QUARTER_CIRCLE = 90;
+    private static final int SWEEP_STEPS = 7;
+    private static final int REVERSE_SWEEP_STEPS = 11;
+
+    public void testUnionWedge_doesNotAllocate() {
+        RectF bounds = new RectF();
+        runFrames(bounds, 0, WARM_UP_FRAMES);
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        try {
+            runFrames(bounds, WARM_UP_FRAMES, FRAMES);
+            assertEquals(0, Debug.getThreadAllocCount());
+        } finally {
+            Debug.stopAllocCounting();
+        }
+    }
+
+    private static void runFrames(RectF bounds, int first, int count) {
+        for (int index = first; index < first + count; index++) {
+            float start = index % FULL_CIRCLE;
+            ArcGeometry.resetToPoint(CENTER, CENTER, bounds);
+            ArcGeometry.unionWedge(CENTER, CENTER, RADIUS, start, index % SWEEP_STEPS, bounds);
+            ArcGeometry.unionWedge(CENTER, CENTER, RADIUS, start + QUARTER_CIRCLE,
+                    -(index % REVERSE_SWEEP_STEPS), bounds);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package be.appfoundry.progressbutton;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import be.appfoundry.progressbutton.util.ThemeColors;
+
+/**
+ * Measures the cost of creating many buttons, as done when inflating a grid screen. The results
+ * are written to the log.
+ */
+public class InflationBenchmark extends AndroidTestCase {
+
+    private static final String TAG = "InflationBenchmark";
+    private static final int INSTANCES = 500;
+    private static final int PASSES = 5;
+
+    public void testInflate_cachedThemeColors() {
+        inflateAll();
+        long start = System.nanoTime();
+        for (int pass = 0; pass < PASSES; pass++) {
+            inflateAll();
+        }
+        report("cached theme colors", System.nanoTime() - start);
+    }
+
+    public void testInflate_resolvedThemeColors() {
+        inflateAll();
+        long start = System.nanoTime();
+        for (int pass = 0; pass < PASSES; pass++) {
+            for (int i = 0; i < INSTANCES; i++) {
+                // resolve the theme colors for every button, as before they were cached
+                ThemeColors.clear();
+                new ProgressButton(getContext());
+            }
+        }
+        report("resolved theme colors", System.nanoTime() - start);
+    }
+
+    private void inflateAll() {
+        for (int i = 0; i < INSTANCES; i++) {
+            assertNotNull(new ProgressButton(getContext()));
+        }
+    }
+
+    private void report(String name, long nanos) {
+        Log.i(TAG, name + ": " + nanos / (INSTANCES * PASSES) + " ns per button");
+    }
+}
@@ -0,0 +1,65 @@
+package be.appfoundry.progressbutton;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Measures the cost of measure passes over many buttons, as done by a list rebinding its rows.
+ * The results are written to the log.
+ */
+public class MeasureBenchmark extends AndroidTestCase {
+
+    private static final String TAG = "MeasureBenchmark";
+    private static final int INSTANCES = 500;
+    private static final int PASSES = 20;
+    private static final int SIZE = 300;
+
+    private ProgressButton[] buttons;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        buttons = new ProgressButton[INSTANCES];
+        for (int i = 0; i < INSTANCES; i++) {
+            buttons[i] = new ProgressButton(getContext());
+            buttons[i].setLayoutParams(new ViewGroup.LayoutParams(
+                    i % 2 == 0
+                            ? ViewGroup.LayoutParams.WRAP_CONTENT
+                            : ViewGroup.LayoutParams.MATCH_PARENT,
+                    ViewGroup.LayoutParams.WRAP_CONTENT));
+        }
+    }
+
+    public void testMeasure_sameSpec() {
+        int spec = View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.AT_MOST);
+        measureAll(spec);
+        long start = System.nanoTime();
+        for (int pass = 0; pass < PASSES; pass++) {
+            measureAll(spec);
+        }
+        report("same spec", System.nanoTime() - start);
+    }
+
+    public void testMeasure_changingSpec() {
+        long start = System.nanoTime();
+        for (int pass = 0; pass < PASSES; pass++) {
+            measureAll(View.MeasureSpec.makeMeasureSpec(SIZE + pass, View.MeasureSpec.AT_MOST));
+        }
+        report("changing spec", System.nanoTime() - start);
+    }
+
+    private void measureAll(int spec) {
+        for (ProgressButton button : buttons) {
+            // a rebind requests a new layout, so the platform measure cache does not apply
+            button.forceLayout();
+            button.measure(spec, spec);
+            assertEquals(button.getMeasuredWidth(), button.getMeasuredHeight());
+        }
+    }
+
+    private void report(String name, long nanos) {
+        Log.i(TAG, name + ": " + nanos / (INSTANCES * PASSES) + " ns per measure");
+    }
+}
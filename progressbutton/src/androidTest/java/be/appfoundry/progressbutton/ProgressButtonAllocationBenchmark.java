@@ -0,0 +1,187 @@
+package be.appfoundry.progressbutton;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Build;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.view.View;
+
+import be.appfoundry.progressbutton.util.AnimationTicker;
+
+/**
+ * Measures, lays out, draws and animates the button and its drawable thousands of times and
+ * fails if a frame allocates. Allocations are counted by the runtime, so the budgets hold for the
+ * framework paths the JVM tests cannot run.
+ */
+public class ProgressButtonAllocationBenchmark extends AndroidTestCase {
+
+    private static final int SIZE = 200;
+    private static final int WARM_UP_FRAMES = 2000;
+    private static final int FRAMES = 2000;
+    private static final long NANOS_PER_FRAME = 16666667L;
+    private static final int HALF_ALPHA = 128;
+
+    private Canvas canvas;
+    private ProgressButton button;
+    private int sizeSpec;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        canvas = new Canvas(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+        sizeSpec = View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY);
+        button = new ProgressButton(getContext());
+        // animations of buttons outside a window are paused
+        button.onAttachedToWindow();
+        button.setIndeterminate(false);
+        button.measure(sizeSpec, sizeSpec);
+        button.layout(0, 0, SIZE, SIZE);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        button.stopAnimating();
+        super.tearDown();
+    }
+
+    public void testDeterminate_doesNotAllocate() {
+        assertEquals(0, countAllocations(new DeterminateFrame()));
+    }
+
+    public void testDeterminateCached_doesNotAllocate() {
+        button.setStaticLayerCacheEnabled(true);
+        assertEquals(0, countAllocations(new DeterminateFrame()));
+    }
+
+    public void testRing_doesNotAllocate() {
+        button.setDrawMode(ProgressButton.DRAW_MODE_RING);
+        button.setRoundedCaps(true);
+        assertEquals(0, countAllocations(new DeterminateFrame()));
+    }
+
+    public void testIndeterminate_doesNotAllocate() {
+        button.setIndeterminate(true);
+        button.startAnimating();
+        assertEquals(0, countAllocations(new AnimationFrame()));
+    }
+
+    public void testIndeterminateCached_doesNotAllocate() {
+        button.setStaticLayerCacheEnabled(true);
+        button.setIndeterminate(true);
+        button.startAnimating();
+        assertEquals(0, countAllocations(new AnimationFrame()));
+    }
+
+    public void testRingIndeterminate_doesNotAllocate() {
+        button.setDrawMode(ProgressButton.DRAW_MODE_RING);
+        button.setIndeterminate(true);
+        button.startAnimating();
+        assertEquals(0, countAllocations(new AnimationFrame()));
+    }
+
+    public void testDrawable_doesNotAllocate() {
+        ProgressDrawable drawable = new ProgressDrawable();
+        drawable.setBounds(0, 0, SIZE, SIZE);
+        assertEquals(0, countAllocations(new DrawableFrame(drawable)));
+    }
+
+    public void testDrawableSweepWithAlpha_doesNotAllocate() {
+        ProgressDrawable drawable = new ProgressDrawable();
+        drawable.setBounds(0, 0, SIZE, SIZE);
+        drawable.setDrawMode(ProgressDrawable.DRAW_MODE_SWEEP);
+        drawable.setAlpha(HALF_ALPHA);
+        assertEquals(0, countAllocations(new DrawableFrame(drawable)));
+    }
+
+    public void testMeasure_changingSpec_doesNotAllocate() {
+        final int smallerSpec =
+                View.MeasureSpec.makeMeasureSpec(SIZE - 1, View.MeasureSpec.AT_MOST);
+        assertEquals(0, countAllocations(new Frame() {
+            @Override
+            public void run(int index) {
+                // every pass misses the measure cache
+                int spec = index % 2 == 0 ? sizeSpec : smallerSpec;
+                button.onMeasure(spec, spec);
+            }
+        }));
+    }
+
+    public void testOutline_doesNotAllocate() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            // the elevation outline only exists on Lollipop and later
+            return;
+        }
+        assertEquals(0, countAllocations(new Frame() {
+            @Override
+            public void run(int index) {
+                // every layout changes the size, so the outline is resized
+                int size = index % 2 == 0 ? SIZE : SIZE - 1;
+                button.layout(0, 0, size, size);
+            }
+        }));
+    }
+
+    private static int countAllocations(Frame frame) {
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            frame.run(i);
+        }
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        try {
+            for (int i = WARM_UP_FRAMES; i < WARM_UP_FRAMES + FRAMES; i++) {
+                frame.run(i);
+            }
+            return Debug.getThreadAllocCount();
+        } finally {
+            Debug.stopAllocCounting();
+        }
+    }
+
+    /**
+     * A single frame of the measured loop.
+     */
+    private interface Frame {
+        void run(int index);
+    }
+
+    /**
+     * Changes the progress, then measures and draws the button.
+     */
+    private class DeterminateFrame implements Frame {
+        @Override
+        public void run(int index) {
+            button.setProgress(index % (int) button.getMaxProgress());
+            button.onMeasure(sizeSpec, sizeSpec);
+            button.onDraw(canvas);
+        }
+    }
+
+    /**
+     * Changes the progress of a drawable, then draws it.
+     */
+    private class DrawableFrame implements Frame {
+        private final ProgressDrawable drawable;
+
+        DrawableFrame(ProgressDrawable drawable) {
+            this.drawable = drawable;
+        }
+
+        @Override
+        public void run(int index) {
+            drawable.setProgress(index % (int) drawable.getMaxProgress());
+            drawable.draw(canvas);
+        }
+    }
+
+    /**
+     * Advances the shared ticker, then draws the button.
+     */
+    private class AnimationFrame implements Frame {
+        @Override
+        public void run(int index) {
+            AnimationTicker.getInstance().doFrame((index + 1) * NANOS_PER_FRAME);
+            button.onDraw(canvas);
+        }
+    }
+}
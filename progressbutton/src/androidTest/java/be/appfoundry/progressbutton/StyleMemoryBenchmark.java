@@ -0,0 +1,57 @@
+package be.appfoundry.progressbutton;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/**
+ * Measures the heap retained per button for a list of buttons styled the same, with the style
+ * shared and with a private copy of the style per button, as before styles were interned. The
+ * results are written to the log.
+ */
+public class StyleMemoryBenchmark extends AndroidTestCase {
+
+    private static final String TAG = "StyleMemoryBenchmark";
+    private static final int INSTANCES = 10000;
+    private static final int GC_PASSES = 3;
+    private static final int OPAQUE = 0xFF000000;
+
+    public void testRetained_sharedStyle() {
+        long before = usedMemory();
+        ProgressButton[] buttons = createButtons();
+        report("shared style", usedMemory() - before);
+        // keeps the buttons reachable until measured
+        assertEquals(INSTANCES, buttons.length);
+    }
+
+    public void testRetained_privateStyle() {
+        long before = usedMemory();
+        ProgressButton[] buttons = createButtons();
+        for (int i = 0; i < INSTANCES; i++) {
+            // a distinct color per button interns a style of its own
+            buttons[i].setColor(OPAQUE | i);
+        }
+        report("private style", usedMemory() - before);
+        assertEquals(INSTANCES, buttons.length);
+    }
+
+    private ProgressButton[] createButtons() {
+        ProgressButton[] buttons = new ProgressButton[INSTANCES];
+        for (int i = 0; i < INSTANCES; i++) {
+            buttons[i] = new ProgressButton(getContext());
+        }
+        return buttons;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < GC_PASSES; i++) {
+            runtime.gc();
+            runtime.runFinalization();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private void report(String name, long bytes) {
+        Log.i(TAG, name + ": " + bytes / INSTANCES + " bytes retained per button");
+    }
+}
@@ -0,0 +1,597 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package be.appfoundry.progressbutton;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.support.annotation.ColorInt;
+import android.util.AttributeSet;
+import android.view.View;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+import be.appfoundry.progressbutton.core.FrameTicker;
+import be.appfoundry.progressbutton.core.ProgressModel;
+import be.appfoundry.progressbutton.util.AnimationTicker;
+import be.appfoundry.progressbutton.util.ThemeColors;
+
+/**
+ * A single view drawing a grid of progress rings, for dashboards showing hundreds of indicators
+ * where a {@link ProgressButton} per indicator would cost a measure, layout and draw pass each.
+ * <p>
+ * The cells are kept in primitive arrays: a progress value, an index into the palette of
+ * progress colors, and an indeterminate and a dirty bit. Updating a cell writes the arrays and
+ * sets its dirty bit; once per frame the span of dirty cells of every row is invalidated, and
+ * only the rows and columns inside the clip of the redraw are visited. The platform may merge
+ * the invalidated spans, and hardware accelerated windows record the whole board again, so this
+ * limits the cells drawn rather than guaranteeing only dirty ones are. All indeterminate cells
+ * share one animation, advanced by the shared {@link AnimationTicker}. The rings are drawn with
+ * the {@link ProgressDrawable}s of the buttons, one per palette color. Must be used from the
+ * main thread.
+ */
+public class ProgressBoardView extends View {
+
+    private static final int DEFAULT_COLUMN_COUNT = 10;
+    private static final float DEFAULT_CELL_SIZE_DP = 32f;
+    private static final float DEFAULT_CELL_SPACING_DP = 4f;
+    private static final float DEFAULT_STROKE_WIDTH_DP = 3f;
+    private static final long MAX_FRAME_DELTA_NANOS = 100000000L;
+    private static final int BITS_PER_WORD = 64;
+    private static final int WORD_SHIFT = 6;
+
+    /**
+     * The progress per cell.
+     */
+    private float[] progress = new float[0];
+    /**
+     * The palette index of the progress color per cell.
+     */
+    private byte[] colorIndices = new byte[0];
+    /**
+     * One bit per indeterminate cell.
+     */
+    private long[] indeterminateBits = new long[0];
+    /**
+     * One bit per cell changed since the last frame.
+     */
+    private long[] dirtyBits = new long[0];
+    private int cellCount;
+    private int indeterminateCount;
+    private boolean dirty;
+
+    private int columnCount = DEFAULT_COLUMN_COUNT;
+    private int cellSize;
+    private int defaultCellSize;
+    private float cellSpacing;
+
+    private int color;
+    private int strokeColor;
+    private float strokeWidth;
+    private int drawMode = ProgressDrawable.DRAW_MODE_PIE;
+    private int[] palette;
+    private float animationSpeed = ProgressDrawable.DEFAULT_ANIMATION_SPEED;
+
+    /**
+     * The drawables drawing the cells, one per palette color. They share {@link #cellModel}.
+     */
+    private ProgressDrawable[] drawables;
+    /**
+     * The state of the cell being drawn.
+     */
+    private final ProgressModel cellModel = new ProgressModel();
+    /**
+     * The animation shared by all indeterminate cells.
+     */
+    private final ProgressModel animationModel = new ProgressModel();
+    private long lastFrameTimeNanos;
+    /**
+     * Indicates if the board was detached from its window.
+     */
+    private boolean detachedFromWindow;
+    /**
+     * The visibility of the window the board is attached to.
+     */
+    private int windowVisibility = VISIBLE;
+    private final FrameCallback frameCallback = new FrameCallback(this);
+    private final Rect cellRect = new Rect();
+    private final Rect clipRect = new Rect();
+
+    public ProgressBoardView(Context context) {
+        this(context, null);
+    }
+
+    public ProgressBoardView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public ProgressBoardView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        float density = context.getResources().getDisplayMetrics().density;
+        defaultCellSize = (int) (DEFAULT_CELL_SIZE_DP * density);
+        cellSpacing = DEFAULT_CELL_SPACING_DP * density;
+        strokeWidth = DEFAULT_STROKE_WIDTH_DP * density;
+        ThemeColors themeColors = ThemeColors.get(context.getTheme());
+        color = themeColors.getColorPrimary();
+        strokeColor = themeColors.getColorPrimaryDark();
+        palette = new int[] {themeColors.getColorAccent()};
+        updateDrawables();
+    }
+
+    /**
+     * Returns the number of cells.
+     */
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    /**
+     * Sets the number of cells. Existing cells keep their state, new cells are empty.
+     */
+    public void setCellCount(int cellCount) {
+        if (cellCount < 0) {
+            throw new IllegalArgumentException(
+                    "Cell count (" + cellCount + ") must not be negative");
+        }
+        if (this.cellCount == cellCount) {
+            return;
+        }
+        int words = (cellCount + BITS_PER_WORD - 1) >> WORD_SHIFT;
+        progress = Arrays.copyOf(progress, cellCount);
+        colorIndices = Arrays.copyOf(colorIndices, cellCount);
+        indeterminateBits = Arrays.copyOf(indeterminateBits, words);
+        dirtyBits = new long[words];
+        if (cellCount < this.cellCount && words > 0) {
+            // forget the bits of removed cells in the last word
+            int used = cellCount & (BITS_PER_WORD - 1);
+            if (used != 0) {
+                indeterminateBits[words - 1] &= (1L << used) - 1;
+            }
+        }
+        this.cellCount = cellCount;
+        indeterminateCount = 0;
+        for (long word : indeterminateBits) {
+            indeterminateCount += Long.bitCount(word);
+        }
+        updateAnimation();
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Returns the number of columns of the grid.
+     */
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * Sets the number of columns of the grid. Defaults to 10.
+     */
+    public void setColumnCount(int columnCount) {
+        if (columnCount <= 0) {
+            throw new IllegalArgumentException(
+                    "Column count (" + columnCount + ") must be positive");
+        }
+        this.columnCount = columnCount;
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Sets the space between two rings in pixels.
+     */
+    public void setCellSpacing(float cellSpacing) {
+        this.cellSpacing = cellSpacing;
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Returns the maximum progress of all cells.
+     */
+    public float getMaxProgress() {
+        return cellModel.getMaxProgress();
+    }
+
+    /**
+     * Sets the maximum progress of all cells.
+     */
+    public void setMaxProgress(float maxProgress) {
+        cellModel.setMaxProgress(maxProgress);
+        animationModel.setMaxProgress(maxProgress);
+        invalidate();
+    }
+
+    /**
+     * Returns the progress of a cell.
+     */
+    public float getCellProgress(int cell) {
+        checkCell(cell);
+        return progress[cell];
+    }
+
+    /**
+     * Sets the progress of a cell. (must be between 0 and maxProgress) The cell is invalidated on
+     * the next frame, together with all other cells changed until then.
+     */
+    public void setCellProgress(int cell, float progress) {
+        checkCell(cell);
+        cellModel.checkProgress(progress);
+        if (this.progress[cell] != progress) {
+            this.progress[cell] = progress;
+            markDirty(cell);
+        }
+    }
+
+    /**
+     * Returns the palette index of the progress color of a cell.
+     */
+    public int getCellColorIndex(int cell) {
+        checkCell(cell);
+        return colorIndices[cell];
+    }
+
+    /**
+     * Sets the palette index of the progress color of a cell.
+     */
+    public void setCellColorIndex(int cell, int colorIndex) {
+        checkCell(cell);
+        if (colorIndex < 0 || colorIndex >= palette.length) {
+            throw new IndexOutOfBoundsException(
+                    "Color index " + colorIndex + " out of " + palette.length);
+        }
+        if (colorIndices[cell] != colorIndex) {
+            colorIndices[cell] = (byte) colorIndex;
+            markDirty(cell);
+        }
+    }
+
+    /**
+     * Returns true if a cell shows the indeterminate animation.
+     */
+    public boolean isCellIndeterminate(int cell) {
+        checkCell(cell);
+        return (indeterminateBits[cell >> WORD_SHIFT] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Sets whether a cell shows the indeterminate animation. All indeterminate cells show the
+     * same animation.
+     */
+    public void setCellIndeterminate(int cell, boolean indeterminate) {
+        if (isCellIndeterminate(cell) == indeterminate) {
+            return;
+        }
+        if (indeterminate) {
+            indeterminateBits[cell >> WORD_SHIFT] |= 1L << cell;
+            indeterminateCount++;
+        } else {
+            indeterminateBits[cell >> WORD_SHIFT] &= ~(1L << cell);
+            indeterminateCount--;
+        }
+        markDirty(cell);
+        updateAnimation();
+    }
+
+    /**
+     * Sets the progress colors cells can pick with {@link #setCellColorIndex(int, int)}. At most
+     * 128 colors; cells pointing past the new palette use its first color.
+     */
+    public void setPalette(@ColorInt int... palette) {
+        if (palette.length == 0 || palette.length > Byte.MAX_VALUE + 1) {
+            throw new IllegalArgumentException(
+                    "Palette size (" + palette.length + ") out of range");
+        }
+        this.palette = palette.clone();
+        updateDrawables();
+    }
+
+    /**
+     * Sets the background color of the rings.
+     */
+    public void setColor(@ColorInt int color) {
+        this.color = color;
+        updateDrawables();
+    }
+
+    /**
+     * Sets the stroke color of the rings.
+     */
+    public void setStrokeColor(@ColorInt int strokeColor) {
+        this.strokeColor = strokeColor;
+        updateDrawables();
+    }
+
+    /**
+     * Sets the stroke width of the rings in pixels.
+     */
+    public void setStrokeWidth(float strokeWidth) {
+        this.strokeWidth = strokeWidth;
+        updateDrawables();
+    }
+
+    /**
+     * Sets how the rings are drawn, one of the draw modes of {@link ProgressDrawable}.
+     */
+    public void setDrawMode(int drawMode) {
+        if (drawMode != ProgressDrawable.DRAW_MODE_PIE
+                && drawMode != ProgressDrawable.DRAW_MODE_RING
+                && drawMode != ProgressDrawable.DRAW_MODE_SWEEP) {
+            throw new IllegalArgumentException("Unknown draw mode: " + drawMode);
+        }
+        this.drawMode = drawMode;
+        updateDrawables();
+    }
+
+    /**
+     * Sets the speed of the indeterminate animation in degrees per second.
+     */
+    public void setAnimationSpeed(float animationSpeed) {
+        this.animationSpeed = animationSpeed;
+    }
+
+    /**
+     * Returns true if a cell changed since it was last invalidated.
+     */
+    boolean isCellDirty(int cell) {
+        return (dirtyBits[cell >> WORD_SHIFT] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Returns the progress of the animation shared by the indeterminate cells.
+     */
+    float getAnimationProgress() {
+        return animationModel.getProgress();
+    }
+
+    private void checkCell(int cell) {
+        if (cell < 0 || cell >= cellCount) {
+            throw new IndexOutOfBoundsException("Cell " + cell + " out of " + cellCount);
+        }
+    }
+
+    /**
+     * Sets the dirty bit of a cell and makes sure a frame is coming to invalidate it.
+     */
+    private void markDirty(int cell) {
+        dirtyBits[cell >> WORD_SHIFT] |= 1L << cell;
+        if (!dirty) {
+            dirty = true;
+            AnimationTicker.getInstance().register(frameCallback);
+        }
+    }
+
+    /**
+     * Creates the drawables for the current style, one per palette color.
+     */
+    private void updateDrawables() {
+        drawables = new ProgressDrawable[palette.length];
+        for (int i = 0; i < palette.length; i++) {
+            ProgressDrawable.ProgressState state = ProgressDrawable.ProgressState.intern(
+                    new ProgressDrawable.ProgressState.Builder()
+                            .setColor(color)
+                            .setStrokeColor(strokeColor)
+                            .setProgressColor(palette[i])
+                            .setGradientColors(palette[i], palette[i])
+                            .setStrokeWidth(strokeWidth)
+                            .setDrawMode(drawMode));
+            drawables[i] = new ProgressDrawable(state, cellModel);
+        }
+        invalidate();
+    }
+
+    /**
+     * Runs the shared animation while there are indeterminate cells and the board can be seen.
+     * The frame callback stops itself once the board is hidden.
+     */
+    private void updateAnimation() {
+        if (indeterminateCount > 0 && isAnimationVisible()) {
+            AnimationTicker.getInstance().register(frameCallback);
+        }
+    }
+
+    /**
+     * Returns true if the board is visible and in a visible window.
+     */
+    private boolean isAnimationVisible() {
+        boolean shown = getWindowToken() == null ? getVisibility() == VISIBLE : isShown();
+        return shown && !detachedFromWindow && windowVisibility == VISIBLE;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        detachedFromWindow = false;
+        lastFrameTimeNanos = 0;
+        updateAnimation();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateAnimation();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        windowVisibility = visibility;
+        updateAnimation();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        detachedFromWindow = true;
+        AnimationTicker.getInstance().unregister(frameCallback);
+        Arrays.fill(dirtyBits, 0);
+        dirty = false;
+    }
+
+    /**
+     * Advances the shared animation and invalidates the dirty cells.
+     *
+     * @return true while indeterminate cells need more frames.
+     */
+    private boolean onFrame(long frameTimeNanos) {
+        boolean animate = indeterminateCount > 0 && isAnimationVisible();
+        if (animate) {
+            long elapsed = lastFrameTimeNanos == 0 ? 0 : frameTimeNanos - lastFrameTimeNanos;
+            animationModel.advanceByTime(Math.min(elapsed, MAX_FRAME_DELTA_NANOS), animationSpeed);
+            for (int i = 0; i < dirtyBits.length; i++) {
+                dirtyBits[i] |= indeterminateBits[i];
+            }
+            dirty = true;
+        }
+        lastFrameTimeNanos = animate ? frameTimeNanos : 0;
+        if (dirty) {
+            invalidateDirtyCells();
+        }
+        return animate;
+    }
+
+    /**
+     * Invalidates the dirty cells and clears the dirty bits. Every row is invalidated once, from
+     * its first to its last dirty cell, so dirty cells far apart on the board do not invalidate
+     * the rows between them.
+     */
+    private void invalidateDirtyCells() {
+        dirty = false;
+        int row = -1;
+        int firstColumn = 0;
+        int lastColumn = 0;
+        for (int word = 0; word < dirtyBits.length; word++) {
+            long bits = dirtyBits[word];
+            dirtyBits[word] = 0;
+            while (bits != 0) {
+                int cell = (word << WORD_SHIFT) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                int cellRow = cell / columnCount;
+                int column = cell % columnCount;
+                if (cellRow != row) {
+                    invalidateRow(row, firstColumn, lastColumn);
+                    row = cellRow;
+                    firstColumn = column;
+                }
+                lastColumn = column;
+            }
+        }
+        invalidateRow(row, firstColumn, lastColumn);
+    }
+
+    /**
+     * Invalidates the cells of a row from the first to the last column, nothing if row is -1.
+     */
+    private void invalidateRow(int row, int firstColumn, int lastColumn) {
+        if (row < 0) {
+            return;
+        }
+        int left = getPaddingLeft() + firstColumn * cellSize;
+        int top = getPaddingTop() + row * cellSize;
+        invalidate(left, top, getPaddingLeft() + (lastColumn + 1) * cellSize, top + cellSize);
+    }
+
+    private void getCellRect(int cell, Rect rect) {
+        int left = getPaddingLeft() + (cell % columnCount) * cellSize;
+        int top = getPaddingTop() + (cell / columnCount) * cellSize;
+        rect.set(left, top, left + cellSize, top + cellSize);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int horizontalPadding = getPaddingLeft() + getPaddingRight();
+        int width = resolveSize(
+                columnCount * defaultCellSize + horizontalPadding,
+                widthMeasureSpec);
+        cellSize = Math.max(0, (width - horizontalPadding) / columnCount);
+        int rows = (cellCount + columnCount - 1) / columnCount;
+        int height = resolveSize(
+                rows * cellSize + getPaddingTop() + getPaddingBottom(),
+                heightMeasureSpec);
+        setMeasuredDimension(width, height);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (cellSize <= 0) {
+            return;
+        }
+        if (!canvas.getClipBounds(clipRect)) {
+            return;
+        }
+        // only the rows and columns overlapping the clip, a partial redraw of a large board does
+        // not visit every cell
+        int left = getPaddingLeft();
+        int top = getPaddingTop();
+        int rows = (cellCount + columnCount - 1) / columnCount;
+        int firstRow = Math.max(0, (clipRect.top - top) / cellSize);
+        int lastRow = Math.min(rows - 1, (clipRect.bottom - 1 - top) / cellSize);
+        int firstColumn = Math.max(0, (clipRect.left - left) / cellSize);
+        int lastColumn = Math.min(columnCount - 1, (clipRect.right - 1 - left) / cellSize);
+        float radius = (cellSize - cellSpacing) / 2;
+        for (int row = firstRow; row <= lastRow; row++) {
+            int rowStart = row * columnCount;
+            int rowEnd = Math.min(cellCount, rowStart + lastColumn + 1);
+            for (int cell = rowStart + firstColumn; cell < rowEnd; cell++) {
+                drawCell(canvas, cell, radius);
+            }
+        }
+    }
+
+    private void drawCell(Canvas canvas, int cell, float radius) {
+        getCellRect(cell, cellRect);
+        if (!Rect.intersects(clipRect, cellRect)) {
+            // clips above or left of the padding round towards the first row or column
+            return;
+        }
+        boolean indeterminate = isCellIndeterminate(cell);
+        if (indeterminate) {
+            cellModel.setState(
+                    animationModel.getProgress(),
+                    animationModel.getStartingPoint(),
+                    animationModel.isReverse());
+        } else {
+            cellModel.setProgressStart(progress[cell], cellModel.getStartDegrees());
+        }
+        int colorIndex = colorIndices[cell] < drawables.length ? colorIndices[cell] : 0;
+        ProgressDrawable drawable = drawables[colorIndex];
+        drawable.setAnimating(indeterminate);
+        drawable.setCircle(cellRect.exactCenterX(), cellRect.exactCenterY(), radius);
+        drawable.draw(canvas);
+    }
+
+    /**
+     * Frame callback of the board, registered while cells are dirty or animating.
+     */
+    static class FrameCallback implements FrameTicker.Callback {
+        private final WeakReference<ProgressBoardView> boardReference;
+
+        FrameCallback(ProgressBoardView board) {
+            boardReference = new WeakReference<>(board);
+        }
+
+        @Override
+        public boolean onAnimationFrame(long frameTimeNanos) {
+            ProgressBoardView board = boardReference.get();
+            return board != null && board.onFrame(frameTimeNanos);
+        }
+    }
+
+}
@@ -17,123 +17,326 @@
 package be.appfoundry.progressbutton;
 
 import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Paint;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.os.Handler;
-import android.os.Message;
+import android.os.Looper;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.SystemClock;
+import android.support.annotation.AnyThread;
 import android.support.annotation.ColorInt;
+import android.support.annotation.DrawableRes;
 import android.support.annotation.IdRes;
+import android.support.v4.content.ContextCompat;
+import android.support.v4.os.TraceCompat;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
-import android.util.TypedValue;
+import android.view.Display;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.view.WindowManager;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityManager;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
+import android.widget.ProgressBar;
 
 import java.lang.ref.WeakReference;
-import java.util.Locale;
-
+import java.util.ArrayList;
+import java.util.WeakHashMap;
+
+import be.appfoundry.progressbutton.core.AtomicProgress;
+import be.appfoundry.progressbutton.core.FramePacer;
+import be.appfoundry.progressbutton.core.FrameTicker;
+import be.appfoundry.progressbutton.core.ProgressModel;
+import be.appfoundry.progressbutton.core.ProgressStateMap;
+import be.appfoundry.progressbutton.core.ProgressTween;
+import be.appfoundry.progressbutton.core.SegmentedProgress;
+import be.appfoundry.progressbutton.metrics.RenderMetrics;
+import be.appfoundry.progressbutton.util.AnimationTicker;
+import be.appfoundry.progressbutton.util.ArcGeometry;
 import be.appfoundry.progressbutton.util.CircularOutline;
+import be.appfoundry.progressbutton.util.FrameScheduler;
+import be.appfoundry.progressbutton.util.IconCache;
+import be.appfoundry.progressbutton.util.ThemeColors;
 
 /**
  * A circular progress button with customizable color and animation.
  */
 public class ProgressButton extends View {
 
-    private static final float DEFAULT_MAX_PROGRESS = 100f;
-    private static final float DEFAULT_ANIMATION_STEP = 1.0f;
-    private static final float DEFAULT_STROKE_WIDTH = 20f;
-    private static final int DEFAULT_START_DEGREES = 270;
-    private static final int DEFAULT_ANIMATION_DELAY = 0;
-    private static final int MAX_DEGREES = 360;
-    private static final int MIN_SIZE = 48;
-    private static final int DEFAULT_COLOR_PRIMARY = 0xFFFFFFFF;
-    private static final int DEFAULT_COLOR_PRIMARY_DARK = 0x33000000;
-    private static final int DEFAULT_COLOR_ACCENT = 0xFF000000;
+    /**
+     * Draw mode painting the border, a pie wedge for the progress and the background on top of
+     * it. Pixels inside the ring are painted up to three times.
+     */
+    public static final int DRAW_MODE_PIE = ProgressDrawable.DRAW_MODE_PIE;
+    /**
+     * Draw mode painting the track and the progress as stroked arcs and filling only the inner
+     * disc, so every pixel of the button is painted about once.
+     */
+    public static final int DRAW_MODE_RING = ProgressDrawable.DRAW_MODE_RING;
+    /**
+     * Draw mode painting the progress as a ring filled with a gradient. The gradient is cached
+     * and only rotated, and the indeterminate animation can be drawn as a comet.
+     */
+    public static final int DRAW_MODE_SWEEP = ProgressDrawable.DRAW_MODE_SWEEP;
 
+    private static final long NANOS_PER_MILLI = 1000000L;
+    /**
+     * The default time for animated progress changes to reach their target, in milliseconds.
+     */
+    private static final long DEFAULT_PROGRESS_DURATION_MS = 300;
+    /**
+     * The default easing of animated progress changes. Interpolators are stateless, so one
+     * instance is shared by all buttons.
+     */
+    private static final Interpolator DEFAULT_PROGRESS_INTERPOLATOR =
+            new DecelerateInterpolator();
+    private static final String TRACE_MEASURE = "ProgressButton#onMeasure";
+    private static final String TRACE_DRAW = "ProgressButton#onDraw";
+    private static final String TRACE_ANIMATION = "ProgressButton#handleAnimation";
+    /**
+     * Upper bound for the time between two animation frames, so a stalled main thread does not
+     * make the indicator jump.
+     */
+    private static final long MAX_FRAME_DELTA_NANOS = 100000000L;
+    /**
+     * Arc changes moving the ends of the progress indicator by less than this many pixels are not
+     * redrawn.
+     */
+    private static final float MIN_VISIBLE_DISTANCE = 0.5f;
     /**
-     * The background color of the button.
+     * Extra pixels around an invalidated arc region, covering anti-aliasing.
      */
-    private int color;
+    private static final int INVALIDATE_MARGIN = 2;
     /**
-     * The stroke color of the button.
+     * Progress announcements to accessibility services are sent when the progress enters another
+     * of this many equal parts of the range.
      */
-    private int strokeColor;
+    private static final int ACCESSIBILITY_BUCKETS = 10;
     /**
-     * The color of the progress indicator.
+     * The default minimum time between two progress announcements, in milliseconds.
      */
-    private int progressColor;
-    private float strokeWidth;
+    private static final long DEFAULT_ACCESSIBILITY_EVENT_INTERVAL_MS = 200;
+    private static final int PERCENT = 100;
+    private static final int MAX_DEGREES = ProgressModel.MAX_DEGREES;
+    private static final int MIN_SIZE = 48;
+
     /**
-     * The maximum progress. Defaults to 100.
+     * Handler delivering progress posted from other threads to the main thread.
      */
-    private float maxProgress = DEFAULT_MAX_PROGRESS;
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
     /**
-     * The value for each animation step. Defaults to 1
+     * Releases the static layers of detached buttons when memory runs low, created on the first
+     * detach of a button holding one.
      */
-    private float animationStep = DEFAULT_ANIMATION_STEP;
+    private static StaticLayerReleaser staticLayerReleaser;
+
     /**
      * Sets the button indeterminate or determinate. Defaults to true.
      */
     private boolean indeterminate;
     /**
-     * Sets the direction of the progress indicator.
+     * The icon on the button. Loaded on demand when the icon is a resource.
+     */
+    private Drawable icon;
+    /**
+     * The drawable resource of the icon, 0 if the icon was set as a drawable.
      */
-    private boolean reverse = false;
+    private int iconResId;
     /**
-     * The icon on the button.
+     * The color the icon is tinted with, 0 for none.
      */
-    private Drawable icon;
+    private int iconTint;
     /**
      * The radius of the outer circle.
      */
     private float radius;
     /**
-     * The current progress of the progress indicator.
+     * The progress, the indeterminate animation state and the arc they map to.
      */
-    private float progress;
+    private final ProgressModel progressModel = new ProgressModel();
     /**
      * indicates if the indeterminate progress animation is running. Defaults to false.
      */
     private boolean isAnimating = false;
     /**
-     * The starting position for the progress indicator.
+     * Indicates if the running animation is paused because the button can not be seen.
+     */
+    private boolean animationSuspended;
+    /**
+     * The time the animation was paused in nanoseconds.
+     */
+    private long suspendedAtNanos;
+    /**
+     * Indicates if the button is attached to a window, as View#isAttachedToWindow(), which is
+     * only public from KitKat. A new button is not attached yet.
+     */
+    private boolean attachedToWindow;
+    /**
+     * The visibility of the window the button is attached to.
+     */
+    private int windowVisibility = VISIBLE;
+    /**
+     * Indicates if the button is completely clipped by its parents, as of the last scroll or
+     * layout of its window.
+     */
+    private boolean clipped;
+    /**
+     * The visible part of the button in window coordinates.
+     */
+    private final Rect visibleRect = new Rect();
+    /**
+     * Detects the button being scrolled or laid out of or into view while it animates.
+     */
+    private final ClipListener clipListener = new ClipListener(this);
+    /**
+     * Picks the frames the indeterminate animation updates on, null when adaptive pacing is
+     * disabled.
+     */
+    private FramePacer framePacer;
+    /**
+     * The time of the previous animation frame in nanoseconds, 0 if no frame was rendered yet.
+     */
+    private long lastFrameTimeNanos;
+    /**
+     * Draws the ring. Holds the colors, the stroke width and the draw mode of the button in its
+     * constant state.
+     */
+    private ProgressDrawable progressDrawable;
+    /**
+     * Indicates if the outer circle, the inner circle and the icon are cached in a bitmap.
+     * Defaults to false.
+     */
+    private boolean staticLayerCacheEnabled;
+    /**
+     * The cached outer circle, inner circle and icon.
+     */
+    private Bitmap staticLayer;
+    /**
+     * The canvas drawing into the static layer.
+     */
+    private Canvas staticLayerCanvas;
+    /**
+     * Indicates if the static layer has to be redrawn before it is used.
+     */
+    private boolean staticLayerDirty = true;
+    /**
+     * The outline provider for the elevation shadow, created on the first size change.
+     */
+    private CircularOutline circularOutline;
+    /**
+     * The minimum size in pixels, resolved on the first WRAP_CONTENT measure pass.
+     */
+    private int minSizePixels = -1;
+    /**
+     * Indicates if the cached measure result can be used.
+     */
+    private boolean measureCacheValid;
+    /**
+     * The inputs of the cached measure result.
+     */
+    private int cachedWidthMeasureSpec;
+    private int cachedHeightMeasureSpec;
+    private int cachedLayoutWidth;
+    private int cachedLayoutHeight;
+    private int cachedWidth;
+    private int cachedHeight;
+    private float cachedRadius;
+    /**
+     * The cached measure result.
+     */
+    private int cachedSize;
+    /**
+     * The callback registered with the {@link AnimationTicker} for the indeterminate progress
+     * animation
+     */
+    private AnimationCallback animationCallback = new AnimationCallback(this);
+    /**
+     * The latest progress posted from any thread that was not rendered yet.
+     */
+    private final AtomicProgress pendingProgress = new AtomicProgress();
+    /**
+     * The progress per segment, null when a single progress value is shown.
+     */
+    private SegmentedProgress segmentedProgress;
+    /**
+     * Moves the progress toward the target of {@link #setProgress(float, boolean)}.
+     */
+    private final ProgressTween progressTween = new ProgressTween();
+    /**
+     * Advances {@link #progressTween} on every frame while it runs.
+     */
+    private final TweenCallback tweenCallback = new TweenCallback(this);
+    /**
+     * The easing of animated progress changes.
+     */
+    private Interpolator progressInterpolator = DEFAULT_PROGRESS_INTERPOLATOR;
+    /**
+     * The time for animated progress changes to reach their target, in milliseconds.
+     */
+    private long progressDuration = DEFAULT_PROGRESS_DURATION_MS;
+    /**
+     * The store this button is bound to, null when not bound.
+     */
+    private ProgressStateStore stateStore;
+    /**
+     * The id of the item this button is bound to in {@link #stateStore}.
+     */
+    private long stateId;
+    /**
+     * Delivers the pending progress and segment updates on the next frame.
+     */
+    private final PendingProgressCallback pendingProgressCallback =
+            new PendingProgressCallback(this);
+    /**
+     * The accessibility manager, looked up on the first progress change.
      */
-    private float startDegrees = DEFAULT_START_DEGREES;
+    private AccessibilityManager accessibilityManager;
     /**
-     * The current starting point of the progress animation.
+     * The progress bucket of the last announcement to accessibility services, -1 if none was
+     * sent.
      */
-    private float startingPoint = DEFAULT_START_DEGREES;
+    private int announcedBucket = -1;
     /**
-     * Delay between animation frames. Defaults to 0.
+     * The uptime of the last announcement in milliseconds.
      */
-    private int animationDelay = DEFAULT_ANIMATION_DELAY;
+    private long announcedAtMillis;
     /**
-     * The Paint for the inner circle.
+     * The minimum time between two announcements in milliseconds.
      */
-    private Paint circlePaint;
+    private long accessibilityEventInterval = DEFAULT_ACCESSIBILITY_EVENT_INTERVAL_MS;
     /**
-     * The Paint for the progress indicator.
+     * Indicates if a delayed announcement is posted.
      */
-    private Paint progressPaint;
+    private boolean announcementPending;
     /**
-     * The Paint for the outer circle.
+     * Sends the announcement delayed until the minimum interval has passed.
      */
-    private Paint strokePaint;
+    private final AnnouncementCallback announcementCallback = new AnnouncementCallback(this);
     /**
-     * The amount of degrees for indicating the progress.
+     * The rendering metrics of this button, null when not collected.
      */
-    private float degrees;
+    private volatile RenderMetrics metrics;
     /**
-     * The handler for the indeterminate progress animation
+     * The progress value shown by the last draw, for counting rendered progress updates. Tween
+     * steps count as their target, frames of the indeterminate animation are left out.
      */
-    private Handler animationHandler = new AnimationHandler(this);
+    private float renderedProgress;
     /**
      * The rectangle for drawing the button.
      */
@@ -143,103 +346,105 @@ public class ProgressButton extends View {
      */
     Rect iconRect = new Rect();
     /**
-     * The rectangle for drawing the icon.
-     */
-    private int colorPrimary = DEFAULT_COLOR_PRIMARY;
-    /**
-     * The rectangle for drawing the icon.
+     * The bounds of the changed arc region.
      */
-    private int colorPrimaryDark = DEFAULT_COLOR_PRIMARY_DARK;
+    private final RectF dirtyRectF = new RectF();
     /**
-     * The rectangle for drawing the icon.
+     * The bounds of the changed arc region, rounded out to pixels.
      */
-    private int colorAccent = DEFAULT_COLOR_ACCENT;
+    private final Rect dirtyRect = new Rect();
 
 
     public ProgressButton(Context context) {
         this(context, null);
-        init(context, null);
     }
 
     public ProgressButton(Context context, AttributeSet attrs) {
         this(context, attrs, 0);
-        init(context, attrs);
     }
 
     public ProgressButton(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
-        init(context, attrs);
+        init(context, attrs, defStyleAttr, 0);
     }
 
     @TargetApi(Build.VERSION_CODES.LOLLIPOP)
     public ProgressButton(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
         super(context, attrs, defStyleAttr, defStyleRes);
-        init(context, attrs);
+        init(context, attrs, defStyleAttr, defStyleRes);
     }
 
     /**
-     * Initialise the {@link ProgressButton}.
+     * Initialise the {@link ProgressButton}. Called exactly once, by the constructor calling the
+     * super constructor.
      *
-     * @param context the application environment
-     * @param attrs   Attribute Set provided
+     * @param context      the application environment
+     * @param attrs        Attribute Set provided
+     * @param defStyleAttr the theme attribute holding the default style
+     * @param defStyleRes  the default style resource
      */
-    private void init(Context context, AttributeSet attrs) {
-        circlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        progressPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        strokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private void init(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
+        // the speed is derived from the animation step and delay unless set
+        ProgressDrawable.ProgressState.Builder style =
+                new ProgressDrawable.ProgressState.Builder().setAnimationSpeed(0);
 
         Resources.Theme theme = context.getTheme();
-        TypedArray attr = context.getTheme()
-                .obtainStyledAttributes(attrs, R.styleable.ProgressButton, 0, 0);
-        TypedValue value = new TypedValue();
-
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-            initColorsLollipop(theme, value);
-        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-            initColorsJellyBean(theme, value);
-        }
+        TypedArray attr = theme.obtainStyledAttributes(
+                attrs,
+                R.styleable.ProgressButton,
+                defStyleAttr,
+                defStyleRes);
+        ThemeColors themeColors = ThemeColors.get(theme);
 
         try {
-            color = attr.getColor(R.styleable.ProgressButton_fillColor, colorPrimary);
-            circlePaint.setColor(color);
-            strokeColor = attr.getColor(R.styleable.ProgressButton_strokeColor, colorPrimaryDark);
-            strokePaint.setColor(strokeColor);
-            progressColor = attr.getColor(R.styleable.ProgressButton_progressColor, colorAccent);
-            progressPaint.setColor(progressColor);
-            strokeWidth = attr.getDimension(
-                    R.styleable.ProgressButton_strokeWidth,
-                    DEFAULT_STROKE_WIDTH
+            style.setColor(attr.getColor(
+                    R.styleable.ProgressButton_fillColor,
+                    themeColors.getColorPrimary()
+            ));
+            style.setStrokeColor(attr.getColor(
+                    R.styleable.ProgressButton_strokeColor,
+                    themeColors.getColorPrimaryDark()
+            ));
+            int progressColor = attr.getColor(
+                    R.styleable.ProgressButton_progressColor,
+                    themeColors.getColorAccent()
             );
+            style.setProgressColor(progressColor);
+            style.setStrokeWidth(attr.getDimension(
+                    R.styleable.ProgressButton_strokeWidth,
+                    ProgressDrawable.DEFAULT_STROKE_WIDTH
+            ));
+            style.setDrawMode(attr.getInt(R.styleable.ProgressButton_drawMode, DRAW_MODE_PIE));
+            style.setRoundedCaps(attr.getBoolean(R.styleable.ProgressButton_roundedCaps, false));
+            style.setGradientColors(
+                    attr.getColor(
+                            R.styleable.ProgressButton_progressGradientStartColor,
+                            progressColor),
+                    attr.getColor(
+                            R.styleable.ProgressButton_progressGradientEndColor,
+                            progressColor));
+            style.setCometTail(attr.getBoolean(R.styleable.ProgressButton_cometTail, false));
+            progressDrawable = new ProgressDrawable(
+                    ProgressDrawable.ProgressState.intern(style),
+                    progressModel);
             indeterminate = attr.getBoolean(R.styleable.ProgressButton_indeterminate, true);
-            icon = attr.getDrawable(R.styleable.ProgressButton_progressIcon);
+            iconResId = attr.getResourceId(R.styleable.ProgressButton_progressIcon, 0);
+            if (iconResId == 0) {
+                icon = attr.getDrawable(R.styleable.ProgressButton_progressIcon);
+            }
+            iconTint = attr.getColor(R.styleable.ProgressButton_iconTint, 0);
+            applyIconTint();
+            staticLayerCacheEnabled = attr.getBoolean(
+                    R.styleable.ProgressButton_cacheStaticLayers,
+                    false
+            );
+            setAdaptivePacingEnabled(
+                    attr.getBoolean(R.styleable.ProgressButton_adaptivePacing, false));
         } finally {
             attr.recycle();
         }
     }
 
-    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
-    private void initColorsLollipop(Resources.Theme theme, TypedValue value) {
-        theme.resolveAttribute(android.R.attr.colorPrimary, value, true);
-        colorPrimary = value.data;
-        theme.resolveAttribute(android.R.attr.colorPrimaryDark, value, true);
-        colorPrimaryDark = value.data;
-        theme.resolveAttribute(android.R.attr.colorAccent, value, true);
-        colorAccent = value.data;
-    }
-
-    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
-    private void initColorsJellyBean(Resources.Theme theme, TypedValue value) {
-        theme.resolveAttribute(android.support.v7.appcompat.R.attr.colorPrimary, value, true);
-        colorPrimary = value.data;
-        theme.resolveAttribute(
-                android.support.v7.appcompat.R.attr.colorPrimaryDark,
-                value,
-                true);
-        colorPrimaryDark = value.data;
-        theme.resolveAttribute(android.support.v7.appcompat.R.attr.colorAccent, value, true);
-        colorAccent = value.data;
-    }
-
     /**
      * Returns true if the progress is indeterminate.
      */
@@ -251,6 +456,9 @@ public class ProgressButton extends View {
      * Sets if the progress is indeterminate or determinate.
      */
     public void setIndeterminate(boolean indeterminate) {
+        if (this.indeterminate == indeterminate) {
+            return;
+        }
         this.indeterminate = indeterminate;
         invalidate();
     }
@@ -259,117 +467,455 @@ public class ProgressButton extends View {
      * Returns the maximum progress value of the indicator.
      */
     public float getMaxProgress() {
-        return maxProgress;
+        return progressModel.getMaxProgress();
     }
 
     /**
-     * Sets the maximus progress value of the indicator.
+     * Sets the maximus progress value of the indicator. A running progress animation toward a
+     * value above the new maximum is retargeted to the maximum.
      */
     public void setMaxProgress(float maxProgress) {
-        this.maxProgress = maxProgress;
+        progressModel.setMaxProgress(maxProgress);
+        if (progressTween.isRunning() && progressTween.getTarget() > maxProgress) {
+            animateProgress(maxProgress);
+        }
     }
 
     /**
      * Returns the current progress.
      */
     public float getProgress() {
-        return progress;
+        return progressModel.getProgress();
     }
 
     /**
      * Sets the current progress. (must be between 0 and maxProgress)
      */
     public void setProgress(float progress) {
-        if (progress > maxProgress || progress < 0) {
-            throw new IllegalArgumentException(String.format(
-                    Locale.getDefault(),
-                    "Progress (%d) must be between %d and %d",
-                    progress,
-                    0,
-                    maxProgress
-            ));
+        RenderMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordProgressReceived();
+        }
+        updateProgress(progress);
+    }
+
+    /**
+     * Sets the current progress, moving the indicator to it smoothly when animate is true.
+     * (must be between 0 and maxProgress)
+     * <p>
+     * The indicator eases from the progress shown toward the new value on the frame clock. A new
+     * value given before the target is reached retargets the running animation, so producers can
+     * send coarse updates and still get smooth motion.
+     *
+     * @param progress The progress to move to.
+     * @param animate  True to animate the change, false to jump to it.
+     */
+    public void setProgress(float progress, boolean animate) {
+        if (!animate) {
+            setProgress(progress);
+            return;
+        }
+        progressModel.checkProgress(progress);
+        RenderMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordProgressReceived();
+        }
+        animateProgress(progress);
+    }
+
+    /**
+     * Starts or retargets the progress animation toward the given progress.
+     */
+    private void animateProgress(float progress) {
+        progressTween.animateTo(
+                Math.min(progressModel.getProgress(), progressModel.getMaxProgress()),
+                progress,
+                progressDuration * NANOS_PER_MILLI);
+        AnimationTicker.getInstance().register(tweenCallback);
+    }
+
+    /**
+     * Returns the easing of animated progress changes.
+     */
+    public Interpolator getProgressInterpolator() {
+        return progressInterpolator;
+    }
+
+    /**
+     * Sets the easing of animated progress changes. Defaults to a {@link DecelerateInterpolator}.
+     * It is called on every frame of the animation, so it should not allocate.
+     */
+    public void setProgressInterpolator(Interpolator progressInterpolator) {
+        this.progressInterpolator = progressInterpolator == null
+                ? DEFAULT_PROGRESS_INTERPOLATOR
+                : progressInterpolator;
+    }
+
+    /**
+     * Returns the time for animated progress changes to reach their target, in milliseconds.
+     */
+    public long getProgressDuration() {
+        return progressDuration;
+    }
+
+    /**
+     * Sets the time for animated progress changes to reach their target, in milliseconds. Match
+     * it to the interval between updates for continuous motion. Defaults to 300.
+     */
+    public void setProgressDuration(long progressDuration) {
+        this.progressDuration = progressDuration;
+    }
+
+    /**
+     * Updates the progress and invalidates the changed part of the indicator. A running progress
+     * animation is cancelled, the new value wins.
+     */
+    private void updateProgress(float progress) {
+        cancelProgressTween();
+        showProgress(progress);
+    }
+
+    private void showProgress(float progress) {
+        progressModel.setProgress(progress);
+        invalidateArc();
+        announceProgress();
+    }
+
+    /**
+     * Returns the minimum time between two progress announcements to accessibility services, in
+     * milliseconds.
+     */
+    public long getAccessibilityEventInterval() {
+        return accessibilityEventInterval;
+    }
+
+    /**
+     * Sets the minimum time between two progress announcements to accessibility services, in
+     * milliseconds. Defaults to 200.
+     */
+    public void setAccessibilityEventInterval(long accessibilityEventInterval) {
+        this.accessibilityEventInterval = accessibilityEventInterval;
+    }
+
+    /**
+     * Announces the progress to accessibility services when it entered another tenth of the range.
+     * Announcements closer together than the minimum interval are coalesced into one delayed
+     * announcement of the latest progress. Nothing is done when no service is enabled.
+     */
+    private void announceProgress() {
+        if (indeterminate || getProgressBucket() == announcedBucket || !isAccessibilityEnabled()) {
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        long wait = announcedAtMillis + accessibilityEventInterval - now;
+        if (wait <= 0 || announcedBucket < 0) {
+            sendProgressEvent(now);
+        } else if (!announcementPending) {
+            announcementPending = true;
+            MAIN_HANDLER.postAtTime(announcementCallback, now + wait);
+        }
+    }
+
+    /**
+     * Sends the delayed announcement if the progress is still in another bucket.
+     */
+    private void sendPendingAnnouncement() {
+        announcementPending = false;
+        if (!indeterminate && getProgressBucket() != announcedBucket && isAccessibilityEnabled()) {
+            sendProgressEvent(SystemClock.uptimeMillis());
+        }
+    }
+
+    private void sendProgressEvent(long now) {
+        announcedBucket = getProgressBucket();
+        announcedAtMillis = now;
+        sendAccessibilityEvent(AccessibilityEvent.TYPE_VIEW_SELECTED);
+    }
+
+    private void cancelAnnouncement() {
+        if (announcementPending) {
+            announcementPending = false;
+            MAIN_HANDLER.removeCallbacks(announcementCallback);
+        }
+    }
+
+    private int getProgressBucket() {
+        return (int) (getProgressFraction() * ACCESSIBILITY_BUCKETS);
+    }
+
+    private float getProgressFraction() {
+        float maxProgress = progressModel.getMaxProgress();
+        return maxProgress > 0 ? Math.min(progressModel.getProgress() / maxProgress, 1) : 0;
+    }
+
+    private boolean isAccessibilityEnabled() {
+        if (accessibilityManager == null) {
+            accessibilityManager = (AccessibilityManager) getContext()
+                    .getSystemService(Context.ACCESSIBILITY_SERVICE);
+        }
+        return accessibilityManager.isEnabled();
+    }
+
+    private void cancelProgressTween() {
+        if (progressTween.isRunning()) {
+            progressTween.cancel();
+            AnimationTicker.getInstance().unregister(tweenCallback);
+        }
+    }
+
+    /**
+     * Moves the progress one frame toward the target.
+     *
+     * @return true while the target is not reached.
+     */
+    private boolean handleProgressTween(long frameTimeNanos) {
+        if (!progressTween.isRunning()) {
+            return false;
+        }
+        float fraction = progressTween.getFraction(frameTimeNanos);
+        float progress = progressTween.getValue(progressInterpolator.getInterpolation(fraction));
+        // overshooting interpolators leave the range on their way to the target
+        showProgress(Math.max(0, Math.min(progress, progressModel.getMaxProgress())));
+        return progressTween.isRunning();
+    }
+
+    /**
+     * Sets the current progress from any thread. (must not be negative)
+     * <p>
+     * Only the latest value is kept and it is applied on the next frame, so this can be called
+     * at any rate: all values posted between two frames result in a single update of the button.
+     * The maximum progress belongs to the main thread, so it is checked when the value is
+     * applied: a value above the maximum progress at that time shows as the maximum.
+     */
+    @AnyThread
+    public void postProgress(float progress) {
+        postProgress(progress, false);
+    }
+
+    /**
+     * Sets the current progress from any thread, optionally animating to it as
+     * {@link #setProgress(float, boolean)} does. (must not be negative)
+     * <p>
+     * Values are coalesced like those of {@link #postProgress(float)}; the latest value decides
+     * whether the change is animated. Posting does not allocate.
+     *
+     * @param progress The progress to move to.
+     * @param animate  True to animate the change, false to jump to it.
+     */
+    @AnyThread
+    public void postProgress(float progress, boolean animate) {
+        if (progress < 0) {
+            throw new IllegalArgumentException(
+                    "Progress (" + progress + ") must not be negative");
+        }
+        RenderMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordProgressReceived();
+        }
+        if (pendingProgress.offer(progress, animate)) {
+            MAIN_HANDLER.post(pendingProgressCallback);
+        }
+    }
+
+    /**
+     * Applies the latest posted progress and the changed segments. Runs on the main thread, the
+     * only thread the maximum progress is read on.
+     */
+    private void applyPendingProgress() {
+        if (pendingProgress.isPending()) {
+            float progress = Math.min(pendingProgress.take(), progressModel.getMaxProgress());
+            if (pendingProgress.isAnimated()) {
+                animateProgress(progress);
+            } else {
+                updateProgress(progress);
+            }
+        }
+        SegmentedProgress segments = segmentedProgress;
+        if (segments != null && segments.takeChanged()) {
+            applySegments(segments);
+        }
+    }
+
+    /**
+     * Returns the progress per segment, or null when a single progress value is shown.
+     */
+    public SegmentedProgress getSegmentedProgress() {
+        return segmentedProgress;
+    }
+
+    /**
+     * Shows the progress per segment instead of a single progress value, or a single value again
+     * when null. Every segment gets a part of the indicator proportional to its size and all
+     * segments are drawn in one pass.
+     * <p>
+     * Worker threads report on the segments directly. The button is woken up by the first report
+     * after a frame and reads all segments once on the next frame, so any number of workers can
+     * report at any rate. While segments are shown, {@link #getProgress()} returns their total
+     * mapped on the maximum progress.
+     */
+    public void setSegmentedProgress(SegmentedProgress segmentedProgress) {
+        if (this.segmentedProgress == segmentedProgress) {
+            return;
+        }
+        if (this.segmentedProgress != null) {
+            this.segmentedProgress.setListener(null);
+        }
+        this.segmentedProgress = segmentedProgress;
+        progressDrawable.setSegmentedProgress(segmentedProgress);
+        if (segmentedProgress != null) {
+            segmentedProgress.setListener(pendingProgressCallback);
+            segmentedProgress.takeChanged();
+            applySegments(segmentedProgress);
+        } else {
+            invalidate();
         }
-        this.progress = progress;
-        degrees = MAX_DEGREES * progress / maxProgress;
+    }
+
+    /**
+     * Updates the progress to the total of the segments and redraws the indicator.
+     */
+    private void applySegments(SegmentedProgress segments) {
+        progressModel.setProgress(segments.getTotalFraction() * progressModel.getMaxProgress());
+        // any part of the ring can have changed
         invalidate();
+        announceProgress();
     }
 
     /**
      * Returns the starting point of the progress indicator.
      */
     public float getStartDegrees() {
-        return startDegrees;
+        return progressModel.getStartDegrees();
     }
 
     /**
      * Sets the starting point of the progress indicator.
      */
     public void setStartDegrees(float degrees) {
-        this.startDegrees = degrees;
-        this.startingPoint = degrees;
-        invalidate();
+        progressModel.setStartDegrees(degrees);
+        invalidateArc();
     }
 
     /**
      * returns the button icon.
      */
     public Drawable getIcon() {
+        if (icon == null && iconResId != 0) {
+            icon = ContextCompat.getDrawable(getContext(), iconResId);
+            applyIconTint();
+        }
         return icon;
     }
 
     /**
-     * Sets the button icon.
+     * Sets the button icon. The icon is drawn as is, scaled to the button on every draw; prefer
+     * {@link #setIconResource(int)} for icons from resources.
      */
     public void setIcon(@IdRes Drawable icon) {
+        if (this.icon == icon && iconResId == 0) {
+            return;
+        }
         this.icon = icon;
-        invalidate();
+        iconResId = 0;
+        applyIconTint();
+        invalidateStaticLayer();
+    }
+
+    /**
+     * Sets the button icon from a drawable resource. The icon is rasterized once at the size it
+     * is drawn and the raster is shared with all buttons showing the same icon at the same size
+     * and tint, see {@link IconCache}.
+     */
+    public void setIconResource(@DrawableRes int resId) {
+        if (iconResId == resId) {
+            return;
+        }
+        iconResId = resId;
+        icon = null;
+        invalidateStaticLayer();
+    }
+
+    /**
+     * Returns the color the icon is tinted with, 0 for none.
+     */
+    public int getIconTint() {
+        return iconTint;
+    }
+
+    /**
+     * Sets the color the icon is tinted with, 0 for none.
+     */
+    public void setIconTint(@ColorInt int iconTint) {
+        if (this.iconTint == iconTint) {
+            return;
+        }
+        this.iconTint = iconTint;
+        applyIconTint();
+        invalidateStaticLayer();
+    }
+
+    private void applyIconTint() {
+        if (icon != null) {
+            if (iconTint != 0) {
+                icon = icon.mutate();
+                icon.setColorFilter(iconTint, PorterDuff.Mode.SRC_IN);
+            } else {
+                icon.setColorFilter(null);
+            }
+        }
     }
 
     /**
      * Returns the background color of the button.
      */
     public int getColor() {
-        return color;
+        return progressDrawable.getColor();
     }
 
     /**
      * Sets the background color of the button.
      */
     public void setColor(@ColorInt int color) {
-        this.color = color;
-        circlePaint.setColor(color);
-        invalidate();
+        if (progressDrawable.getColor() == color) {
+            return;
+        }
+        progressDrawable.setColor(color);
+        invalidateStaticLayer();
     }
 
     /**
      * Returns the stroke color.
      */
     public int getStrokeColor() {
-        return strokeColor;
+        return progressDrawable.getStrokeColor();
     }
 
     /**
      * Sets the stroke color.
      */
     public void setStrokeColor(@ColorInt int strokeColor) {
-        this.strokeColor = strokeColor;
-        strokePaint.setColor(strokeColor);
-        invalidate();
+        if (progressDrawable.getStrokeColor() == strokeColor) {
+            return;
+        }
+        progressDrawable.setStrokeColor(strokeColor);
+        invalidateStaticLayer();
     }
 
     /**
      * Returns the color of the progress indicator.
      */
     public int getProgressColor() {
-        return progressColor;
+        return progressDrawable.getProgressColor();
     }
 
     /**
      * Sets the color of the progress indicator.
      */
     public void setProgressColor(@ColorInt int progressColor) {
-        this.progressColor = progressColor;
-        progressPaint.setColor(progressColor);
+        if (progressDrawable.getProgressColor() == progressColor) {
+            return;
+        }
+        progressDrawable.setProgressColor(progressColor);
         invalidate();
     }
 
@@ -377,28 +923,46 @@ public class ProgressButton extends View {
      * Returns the value for each animation step.
      */
     public float getAnimationStep() {
-        return animationStep;
+        return progressDrawable.getAnimationStep();
     }
 
     /**
-     * Sets the value for each animation step.
+     * Sets the value for each animation step. Together with the animation delay this determines
+     * the animation speed, unless it was set with {@link #setAnimationSpeed(float)}.
      */
     public void setAnimationStep(float animationStep) {
-        this.animationStep = animationStep;
+        progressDrawable.setAnimationStep(animationStep);
     }
 
     /**
      * Returns the animation delay.
      */
     public float getAnimationDelay() {
-        return animationDelay;
+        return progressDrawable.getAnimationDelay();
     }
 
     /**
-     * Sets the animation delay.
+     * Sets the animation delay. Together with the animation step this determines the animation
+     * speed, unless it was set with {@link #setAnimationSpeed(float)}. Delays shorter than a frame
+     * are rounded up to a frame.
      */
     public void setAnimationDelay(int animationDelay) {
-        this.animationDelay = animationDelay;
+        progressDrawable.setAnimationDelay(animationDelay);
+    }
+
+    /**
+     * Returns the speed of the indeterminate animation in degrees per second.
+     */
+    public float getAnimationSpeed() {
+        return progressDrawable.getAnimationSpeed();
+    }
+
+    /**
+     * Sets the speed of the indeterminate animation in degrees per second. Pass 0 to derive the
+     * speed from the animation step and delay again.
+     */
+    public void setAnimationSpeed(float animationSpeed) {
+        progressDrawable.setAnimationSpeed(animationSpeed);
     }
 
     /**
@@ -412,40 +976,316 @@ public class ProgressButton extends View {
      * Sets the radius of the button.
      */
     public void setRadius(float radius) {
+        if (this.radius == radius) {
+            return;
+        }
         this.radius = radius;
-        invalidate();
+        invalidateStaticLayer();
     }
 
     /**
      * Returns the stroke width.
      */
     public float getStrokeWidth() {
-        return strokeWidth;
+        return progressDrawable.getStrokeWidth();
     }
 
     /**
      * Sets the stroke width.
      */
     public void setStrokeWidth(float strokeWidth) {
-        this.strokeWidth = strokeWidth;
-        invalidate();
+        if (progressDrawable.getStrokeWidth() == strokeWidth) {
+            return;
+        }
+        progressDrawable.setStrokeWidth(strokeWidth);
+        invalidateStaticLayer();
     }
 
-    @Override
+    /**
+     * Returns how the button is drawn, {@link #DRAW_MODE_PIE}, {@link #DRAW_MODE_RING} or
+     * {@link #DRAW_MODE_SWEEP}.
+     */
+    public int getDrawMode() {
+        return progressDrawable.getDrawMode();
+    }
+
+    /**
+     * Sets how the button is drawn. {@link #DRAW_MODE_PIE} paints the border, a pie wedge for the
+     * progress and the background on top of it. {@link #DRAW_MODE_RING} paints the border and the
+     * progress as arcs of the stroke width and fills only the inner disc, which avoids painting
+     * the pixels inside the ring more than once. {@link #DRAW_MODE_SWEEP} draws like the ring
+     * mode with a gradient, see {@link #setProgressGradient(int, int)} and
+     * {@link #setCometTail(boolean)}. When the static layers are cached the indicator is always
+     * drawn as a ring on top of the cached bitmap.
+     *
+     * @param drawMode {@link #DRAW_MODE_PIE}, {@link #DRAW_MODE_RING} or {@link #DRAW_MODE_SWEEP}.
+     */
+    public void setDrawMode(int drawMode) {
+        if (progressDrawable.getDrawMode() == drawMode) {
+            return;
+        }
+        progressDrawable.setDrawMode(drawMode);
+        invalidate();
+    }
+
+    /**
+     * Returns the color at the start of the progress gradient.
+     */
+    public int getProgressGradientStartColor() {
+        return progressDrawable.getGradientStartColor();
+    }
+
+    /**
+     * Returns the color at the end of the progress gradient.
+     */
+    public int getProgressGradientEndColor() {
+        return progressDrawable.getGradientEndColor();
+    }
+
+    /**
+     * Sets the colors of the progress gradient of {@link #DRAW_MODE_SWEEP}. The gradient runs once
+     * around the ring from the start degrees and the progress reveals it. Both colors default to
+     * the progress color.
+     */
+    public void setProgressGradient(@ColorInt int startColor, @ColorInt int endColor) {
+        if (progressDrawable.getGradientStartColor() == startColor
+                && progressDrawable.getGradientEndColor() == endColor) {
+            return;
+        }
+        progressDrawable.setGradientColors(startColor, endColor);
+        invalidate();
+    }
+
+    /**
+     * Returns true if the indeterminate animation of {@link #DRAW_MODE_SWEEP} is a comet.
+     */
+    public boolean isCometTail() {
+        return progressDrawable.isCometTail();
+    }
+
+    /**
+     * Draws the indeterminate animation of {@link #DRAW_MODE_SWEEP} as a comet in the progress
+     * color, with a tail fading out once around the ring. Every frame only rotates the gradient.
+     */
+    public void setCometTail(boolean cometTail) {
+        if (progressDrawable.isCometTail() == cometTail) {
+            return;
+        }
+        progressDrawable.setCometTail(cometTail);
+        invalidate();
+    }
+
+    /**
+     * Returns true if the ends of the progress ring are rounded.
+     */
+    public boolean isRoundedCaps() {
+        return progressDrawable.isRoundedCaps();
+    }
+
+    /**
+     * Sets if the ends of the progress ring are rounded. Applies to {@link #DRAW_MODE_RING} and
+     * to the ring drawn over the cached static layers.
+     */
+    public void setRoundedCaps(boolean roundedCaps) {
+        if (progressDrawable.isRoundedCaps() == roundedCaps) {
+            return;
+        }
+        progressDrawable.setRoundedCaps(roundedCaps);
+        invalidate();
+    }
+
+    /**
+     * Returns true if the static layers of the button are cached.
+     */
+    public boolean isStaticLayerCacheEnabled() {
+        return staticLayerCacheEnabled;
+    }
+
+    /**
+     * Sets if the outer circle, the inner circle and the icon are rendered once into a cached
+     * bitmap, so only the progress indicator is drawn on every frame. The cache is rebuilt when
+     * the size, colors, stroke width or icon change. Icons that animate or change state on their
+     * own are not picked up while the cache is enabled. The bitmap is kept while the button is
+     * detached, so recycled buttons reuse it, and released when the system asks to trim memory.
+     */
+    public void setStaticLayerCacheEnabled(boolean staticLayerCacheEnabled) {
+        if (this.staticLayerCacheEnabled == staticLayerCacheEnabled) {
+            return;
+        }
+        this.staticLayerCacheEnabled = staticLayerCacheEnabled;
+        if (!staticLayerCacheEnabled) {
+            releaseStaticLayer();
+        }
+        invalidateStaticLayer();
+    }
+
+    /**
+     * Returns true if the indeterminate animation adapts its update rate.
+     */
+    public boolean isAdaptivePacingEnabled() {
+        return framePacer != null;
+    }
+
+    /**
+     * Sets if the indeterminate animation adapts its update rate to the display and to the
+     * recent frame times. When enabled the animation updates on every frame of the display, so
+     * 90 and 120 Hz panels get smooth motion, and only on every second, third or fourth frame
+     * while frames keep arriving late. The speed of the animation stays the same at every rate.
+     */
+    public void setAdaptivePacingEnabled(boolean adaptivePacingEnabled) {
+        if (adaptivePacingEnabled == (framePacer != null)) {
+            return;
+        }
+        framePacer = adaptivePacingEnabled ? new FramePacer(getDisplayRefreshRate()) : null;
+    }
+
+    /**
+     * Returns the number of times per second the indeterminate animation updates, as chosen by
+     * adaptive pacing. Without adaptive pacing the animation updates on every frame of the
+     * display.
+     */
+    public float getAnimationUpdateRate() {
+        if (framePacer != null) {
+            return framePacer.getUpdateRate();
+        }
+        return getDisplayRefreshRate();
+    }
+
+    /**
+     * Returns the refresh rate of the display showing the button, or of the default display when
+     * the button is not attached.
+     */
+    private float getDisplayRefreshRate() {
+        Display display = null;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            display = getAttachedDisplay();
+        }
+        if (display == null) {
+            WindowManager windowManager =
+                    (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
+            display = windowManager != null ? windowManager.getDefaultDisplay() : null;
+        }
+        return display != null ? display.getRefreshRate() : FramePacer.DEFAULT_REFRESH_RATE;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+    private Display getAttachedDisplay() {
+        return getDisplay();
+    }
+
+    /**
+     * Returns the rendering metrics of this button, null when not collected.
+     */
+    public RenderMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics this button records its draw durations, invalidations, animation ticks
+     * and progress updates into. Pass {@code new RenderMetrics()} to collect metrics that are
+     * also summed up in {@link RenderMetrics#getAggregate()}, or null to stop collecting.
+     */
+    public void setMetrics(RenderMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        RenderMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordInvalidate();
+        }
+    }
+
+    @Override
+    public void invalidate(int left, int top, int right, int bottom) {
+        super.invalidate(left, top, right, bottom);
+        RenderMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordInvalidate();
+        }
+    }
+
+    /**
+     * Marks the static layer for redrawing and invalidates the view.
+     */
+    private void invalidateStaticLayer() {
+        staticLayerDirty = true;
+        invalidate();
+    }
+
+    /**
+     * Returns the bitmap of the static layer, null if it is not allocated.
+     */
+    Bitmap getStaticLayer() {
+        return staticLayer;
+    }
+
+    /**
+     * Releases the bitmap of the static layer.
+     */
+    private void releaseStaticLayer() {
+        if (staticLayer != null) {
+            staticLayer.recycle();
+            staticLayer = null;
+            staticLayerCanvas = null;
+        }
+        staticLayerDirty = true;
+    }
+
+    @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        super.onMeasure(widthMeasureSpec, widthMeasureSpec);
+        TraceCompat.beginSection(TRACE_MEASURE);
+        try {
+            measureButton(widthMeasureSpec, heightMeasureSpec);
+        } finally {
+            TraceCompat.endSection();
+        }
+    }
 
-        int width = getLayoutParams().width;
-        int height = getLayoutParams().height;
+    /**
+     * Measures the button, reusing the previous result when its inputs did not change.
+     */
+    private void measureButton(int widthMeasureSpec, int heightMeasureSpec) {
+        ViewGroup.LayoutParams layoutParams = getLayoutParams();
+        int width = layoutParams != null
+                ? layoutParams.width
+                : ViewGroup.LayoutParams.WRAP_CONTENT;
+        int height = layoutParams != null
+                ? layoutParams.height
+                : ViewGroup.LayoutParams.WRAP_CONTENT;
 
         int getWidth = getWidth();
         int getHeight = getHeight();
 
+        if (measureCacheValid
+                && cachedWidthMeasureSpec == widthMeasureSpec
+                && cachedHeightMeasureSpec == heightMeasureSpec
+                && cachedLayoutWidth == width
+                && cachedLayoutHeight == height
+                && cachedWidth == getWidth
+                && cachedHeight == getHeight
+                && cachedRadius == radius) {
+            setMeasuredDimension(cachedSize, cachedSize);
+            return;
+        }
+
         int resolvedWidth = resolveSize(getWidth, widthMeasureSpec);
         int resolvedHeight = resolveSize(getHeight, heightMeasureSpec);
 
         int size = calculateSize(resolvedWidth, resolvedHeight, width, height);
 
+        cachedWidthMeasureSpec = widthMeasureSpec;
+        cachedHeightMeasureSpec = heightMeasureSpec;
+        cachedLayoutWidth = width;
+        cachedLayoutHeight = height;
+        cachedWidth = getWidth;
+        cachedHeight = getHeight;
+        cachedRadius = radius;
+        cachedSize = size;
+        measureCacheValid = true;
+
         setMeasuredDimension(size, size);
     }
 
@@ -461,26 +1301,22 @@ public class ProgressButton extends View {
 
         if (radius > 0) {
             size = (int) (radius * 2);
-        } else if (getLayoutParams().width == ViewGroup.LayoutParams.MATCH_PARENT
-                && getLayoutParams().height == ViewGroup.LayoutParams.MATCH_PARENT) {
+        } else if (width == ViewGroup.LayoutParams.MATCH_PARENT
+                && height == ViewGroup.LayoutParams.MATCH_PARENT) {
             size = resolvedWidth;
             if (size > resolvedHeight) {
                 size = resolvedHeight;
             }
-        } else if (getLayoutParams().width == ViewGroup.LayoutParams.MATCH_PARENT
-                && getLayoutParams().height != ViewGroup.LayoutParams.MATCH_PARENT) {
+        } else if (width == ViewGroup.LayoutParams.MATCH_PARENT) {
             size = resolvedHeight;
-        } else if (getLayoutParams().height == ViewGroup.LayoutParams.MATCH_PARENT
-                && getLayoutParams().width != ViewGroup.LayoutParams.MATCH_PARENT) {
+        } else if (height == ViewGroup.LayoutParams.MATCH_PARENT) {
             size = resolvedWidth;
-        } else if (getLayoutParams().width == ViewGroup.LayoutParams.WRAP_CONTENT
-                && getLayoutParams().height == ViewGroup.LayoutParams.WRAP_CONTENT) {
-            size = (int) convertDpToPixel(this.getContext(), MIN_SIZE);
-        } else if (getLayoutParams().width == ViewGroup.LayoutParams.WRAP_CONTENT
-                && getLayoutParams().height != ViewGroup.LayoutParams.WRAP_CONTENT) {
+        } else if (width == ViewGroup.LayoutParams.WRAP_CONTENT
+                && height == ViewGroup.LayoutParams.WRAP_CONTENT) {
+            size = getMinSizePixels();
+        } else if (width == ViewGroup.LayoutParams.WRAP_CONTENT) {
             size = resolvedHeight;
-        } else if (getLayoutParams().height == ViewGroup.LayoutParams.WRAP_CONTENT
-                && getLayoutParams().width != ViewGroup.LayoutParams.WRAP_CONTENT) {
+        } else if (height == ViewGroup.LayoutParams.WRAP_CONTENT) {
             size = resolvedWidth;
         } else if (width > height) {
             size = resolvedHeight;
@@ -521,6 +1357,16 @@ public class ProgressButton extends View {
         return size;
     }
 
+    /**
+     * Returns the minimum size in pixels.
+     */
+    private int getMinSizePixels() {
+        if (minSizePixels < 0) {
+            minSizePixels = (int) convertDpToPixel(getContext(), MIN_SIZE);
+        }
+        return minSizePixels;
+    }
+
     /**
      * Convert dp value to pixels.
      */
@@ -534,13 +1380,282 @@ public class ProgressButton extends View {
     @Override
     protected void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-            setOutlineProvider(new CircularOutline(width, height));
+            updateOutline(width, height);
+        }
+        staticLayerDirty = true;
+    }
+
+    /**
+     * Resizes the outline of the elevation shadow, reusing the outline provider.
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void updateOutline(int width, int height) {
+        if (circularOutline == null) {
+            circularOutline = new CircularOutline(width, height);
+            setOutlineProvider(circularOutline);
+        } else {
+            circularOutline.setSize(width, height);
+            invalidateOutline();
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        attachedToWindow = true;
+        clipped = false;
+        if (framePacer != null) {
+            // the button may have moved to another display
+            framePacer.setRefreshRate(getDisplayRefreshRate());
+        }
+        ViewTreeObserver observer = getViewTreeObserver();
+        observer.addOnScrollChangedListener(clipListener);
+        observer.addOnGlobalLayoutListener(clipListener);
+        updateAnimationSuspension();
+        if (staticLayerReleaser != null) {
+            staticLayerReleaser.remove(this);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        attachedToWindow = false;
+        removeClipListener(getViewTreeObserver());
+        updateAnimationSuspension();
+        flushMetrics();
+        cancelAnnouncement();
+        if (staticLayer != null) {
+            // kept for a quick reattach, recycled views detach and attach all the time
+            if (staticLayerReleaser == null) {
+                staticLayerReleaser = StaticLayerReleaser.register(getContext());
+            }
+            staticLayerReleaser.add(this);
+        }
+    }
+
+    /**
+     * Describes the button as a progress bar. Services get the progress as a percentage, the
+     * integer item count of the event can not hold fractional progress values.
+     */
+    @Override
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    public void onInitializeAccessibilityEvent(AccessibilityEvent event) {
+        super.onInitializeAccessibilityEvent(event);
+        event.setClassName(ProgressBar.class.getName());
+        if (!indeterminate) {
+            event.setItemCount(PERCENT);
+            event.setCurrentItemIndex(Math.round(getProgressFraction() * PERCENT));
+        }
+    }
+
+    /**
+     * Describes the button as a progress bar, with the progress as range info from API 19.
+     */
+    @Override
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
+        super.onInitializeAccessibilityNodeInfo(info);
+        info.setClassName(ProgressBar.class.getName());
+        if (!indeterminate && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            setRangeInfo(info);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private void setRangeInfo(AccessibilityNodeInfo info) {
+        info.setRangeInfo(AccessibilityNodeInfo.RangeInfo.obtain(
+                AccessibilityNodeInfo.RangeInfo.RANGE_TYPE_FLOAT,
+                0,
+                progressModel.getMaxProgress(),
+                progressModel.getProgress()));
+    }
+
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        SavedState state = new SavedState(super.onSaveInstanceState());
+        state.progress = progressModel.getProgress();
+        state.maxProgress = progressModel.getMaxProgress();
+        state.startingPoint = progressModel.getStartingPoint();
+        state.stateFlags = getStateFlags();
+        return state;
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        SavedState savedState = (SavedState) state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+        stopAnimating();
+        progressModel.setMaxProgress(savedState.maxProgress);
+        applyState(savedState.progress, savedState.startingPoint, savedState.stateFlags);
+        if ((savedState.stateFlags & ProgressStateMap.FLAG_ANIMATING) != 0) {
+            startAnimating();
+        }
+    }
+
+    /**
+     * Returns the store this button is bound to, or null.
+     */
+    ProgressStateStore getStateStore() {
+        return stateStore;
+    }
+
+    /**
+     * Returns the id of the item this button is bound to.
+     */
+    long getStateId() {
+        return stateId;
+    }
+
+    /**
+     * Binds the button to an item of a store, or unbinds it when the store is null.
+     */
+    void setStateStore(ProgressStateStore stateStore, long stateId) {
+        this.stateStore = stateStore;
+        this.stateId = stateId;
+    }
+
+    /**
+     * Saves the progress, the starting point and the animation phase of the button.
+     *
+     * @param states    The map to save into.
+     * @param id        The id of the item.
+     * @param nowNanos  The current time.
+     */
+    void saveState(ProgressStateMap states, long id, long nowNanos) {
+        float startingPoint = progressModel.getStartingPoint();
+        // a paused animation stopped moving when it was paused
+        long timeNanos = animationSuspended ? suspendedAtNanos : nowNanos;
+        states.put(id, progressModel.getProgress(), startingPoint, getStateFlags(), timeNanos);
+    }
+
+    /**
+     * Restores a state saved with {@link #saveState}. A running animation continues where it
+     * would have been had it kept running since it was saved.
+     *
+     * @param states   The map holding the state.
+     * @param index    The index of the state in the map.
+     * @param nowNanos The current time.
+     */
+    void restoreState(ProgressStateMap states, int index, long nowNanos) {
+        stopAnimating();
+        float startingPoint = states.getStartingPoint(index);
+        int flags = states.getFlags(index);
+        applyState(states.getProgress(index), startingPoint, flags);
+        if ((flags & ProgressStateMap.FLAG_ANIMATING) == 0) {
+            return;
+        }
+        long elapsedNanos = Math.max(0, nowNanos - states.getTimeNanos(index));
+        startAnimating();
+        progressModel.advanceInPhase(elapsedNanos, getAnimationSpeed());
+    }
+
+    /**
+     * Resets the button to an empty, stopped indicator, for an item without saved state.
+     */
+    void resetState() {
+        stopAnimating();
+        progressModel.reset();
+        invalidate();
+    }
+
+    private int getStateFlags() {
+        int flags = 0;
+        if (progressModel.isReverse()) {
+            flags |= ProgressStateMap.FLAG_REVERSE;
+        }
+        if (indeterminate) {
+            flags |= ProgressStateMap.FLAG_INDETERMINATE;
+        }
+        if (isAnimating) {
+            flags |= ProgressStateMap.FLAG_ANIMATING;
+        }
+        return flags;
+    }
+
+    private void applyState(float progress, float startingPoint, int flags) {
+        cancelProgressTween();
+        indeterminate = (flags & ProgressStateMap.FLAG_INDETERMINATE) != 0;
+        progressModel.setState(
+                progress,
+                startingPoint,
+                (flags & ProgressStateMap.FLAG_REVERSE) != 0);
+        // a recycled button shows another item: only announce changes of that item
+        cancelAnnouncement();
+        announcedBucket = getProgressBucket();
+        invalidate();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateAnimationSuspension();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        windowVisibility = visibility;
+        updateAnimationSuspension();
+    }
+
+    @SuppressWarnings("deprecation")
+    private void removeClipListener(ViewTreeObserver observer) {
+        observer.removeOnScrollChangedListener(clipListener);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            observer.removeOnGlobalLayoutListener(clipListener);
+        } else {
+            observer.removeGlobalOnLayoutListener(clipListener);
+        }
+    }
+
+    /**
+     * Checks whether the animating button is still inside the visible part of its parents. Runs
+     * when the animation starts and after every scroll or layout of the window, not on every
+     * frame. A button outside a window has no visible part to check.
+     */
+    private void checkClipped() {
+        if (isAnimating && getWindowToken() != null) {
+            boolean nowClipped = !getGlobalVisibleRect(visibleRect);
+            if (clipped != nowClipped) {
+                clipped = nowClipped;
+                updateAnimationSuspension();
+            }
         }
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
+        TraceCompat.beginSection(TRACE_DRAW);
+        RenderMetrics metrics = this.metrics;
+        long start = metrics != null ? System.nanoTime() : 0;
+        try {
+            drawButton(canvas);
+        } finally {
+            TraceCompat.endSection();
+        }
+        if (metrics != null) {
+            metrics.recordDraw(start, System.nanoTime());
+            // the value the progress was set to: neither an animation frame nor a tween step
+            float progress = progressTween.isRunning()
+                    ? progressTween.getTarget()
+                    : progressModel.getProgress();
+            if (!isAnimating && progress != renderedProgress) {
+                renderedProgress = progress;
+                metrics.recordProgressRendered();
+            }
+        }
+    }
+
+    /**
+     * Draws the button.
+     */
+    private void drawButton(Canvas canvas) {
         if (radius == 0) {
             radius = getWidth() / 2;
         }
@@ -551,12 +1666,67 @@ public class ProgressButton extends View {
         float bottom = (getHeight() / 2) + radius;
 
         buttonRectF.set(left, top, right, bottom);
+        progressModel.markDrawn();
+        progressDrawable.setCircle(getWidth() / 2, getHeight() / 2, radius);
+
+        if (staticLayerCacheEnabled && getWidth() > 0 && getHeight() > 0) {
+            drawCached(canvas);
+            return;
+        }
 
-        canvas.drawCircle(getWidth() / 2, getWidth() / 2, radius, strokePaint);
-        canvas.drawArc(buttonRectF, startingPoint, degrees, true, progressPaint);
-        canvas.drawCircle(getWidth() / 2, getWidth() / 2, radius - strokeWidth, circlePaint);
+        progressDrawable.draw(canvas);
+        drawIcon(canvas);
+    }
 
-        if (icon != null) {
+    /**
+     * Draws the cached static layer and the progress indicator as a ring on top of it.
+     */
+    private void drawCached(Canvas canvas) {
+        if (staticLayerDirty) {
+            drawStaticLayer();
+        }
+        canvas.drawBitmap(staticLayer, 0, 0, null);
+        progressDrawable.drawProgressRing(canvas);
+    }
+
+    /**
+     * Draws the outer circle, the inner circle and the icon into the static layer.
+     */
+    private void drawStaticLayer() {
+        int width = getWidth();
+        int height = getHeight();
+        if (staticLayer == null
+                || staticLayer.getWidth() != width
+                || staticLayer.getHeight() != height) {
+            releaseStaticLayer();
+            staticLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            staticLayerCanvas = new Canvas(staticLayer);
+        } else {
+            staticLayer.eraseColor(Color.TRANSPARENT);
+        }
+
+        progressDrawable.drawStaticLayers(staticLayerCanvas);
+        drawIcon(staticLayerCanvas);
+        staticLayerDirty = false;
+    }
+
+    /**
+     * Draws the icon in the center of the button.
+     */
+    private void drawIcon(Canvas canvas) {
+        if (iconResId != 0) {
+            int size = (int) radius;
+            // looked up on every draw, so the button never keeps an evicted raster alive
+            Bitmap iconRaster = IconCache.getInstance(getContext())
+                    .get(getContext(), iconResId, size, iconTint);
+            if (iconRaster != null) {
+                canvas.drawBitmap(
+                        iconRaster,
+                        (getWidth() - size) / 2,
+                        (getHeight() - size) / 2,
+                        null);
+            }
+        } else if (icon != null) {
             iconRect.set(0, 0, (int) radius, (int) radius);
             iconRect.offset((getWidth() - (int) radius) / 2, (getHeight() - (int) radius) / 2);
             icon.setBounds(iconRect);
@@ -571,82 +1741,416 @@ public class ProgressButton extends View {
      * @param startDegrees Current starting point.
      */
     private void setProgressStart(float progress, float startDegrees) {
-        this.progress = progress;
-        this.startingPoint = startDegrees;
-        degrees = MAX_DEGREES * progress / maxProgress;
-        invalidate();
+        progressModel.setProgressStart(progress, startDegrees);
+        invalidateArc();
+    }
+
+    /**
+     * Invalidates the region of the progress indicator that changed since it was last drawn.
+     * Changes that move the ends of the indicator by less than {@link #MIN_VISIBLE_DISTANCE}
+     * pixels are ignored.
+     */
+    private void invalidateArc() {
+        if (progressDrawable.isComet()) {
+            // the whole comet turns on every frame
+            progressModel.markDrawn();
+            invalidate();
+            return;
+        }
+        if (radius <= 0) {
+            invalidate();
+            return;
+        }
+        float minDegrees = ArcGeometry.degreesForDistance(radius, MIN_VISIBLE_DISTANCE);
+        if (!progressModel.hasVisibleChange(minDegrees)) {
+            return;
+        }
+
+        float startDelta = progressModel.getStartDelta();
+        float endDelta = progressModel.getEndDelta();
+        float drawnStartingPoint = progressModel.getDrawnStartingPoint();
+        float drawnDegrees = progressModel.getDrawnDegrees();
+
+        float centerX = getWidth() / 2f;
+        float centerY = getHeight() / 2f;
+        ArcGeometry.resetToPoint(centerX, centerY, dirtyRectF);
+        if (startDelta != 0) {
+            ArcGeometry.unionWedge(
+                    centerX, centerY, radius, drawnStartingPoint, startDelta, dirtyRectF);
+        }
+        if (endDelta != 0) {
+            ArcGeometry.unionWedge(
+                    centerX, centerY, radius, drawnStartingPoint + drawnDegrees, endDelta,
+                    dirtyRectF);
+        }
+        dirtyRectF.roundOut(dirtyRect);
+        progressModel.markDrawn();
+        // rounded caps stick out of the arc by half the stroke width
+        int margin = progressDrawable.isRoundedCaps()
+                ? INVALIDATE_MARGIN + (int) Math.ceil(progressDrawable.getStrokeWidth() / 2)
+                : INVALIDATE_MARGIN;
+        invalidate(
+                dirtyRect.left - margin,
+                dirtyRect.top - margin,
+                dirtyRect.right + margin,
+                dirtyRect.bottom + margin);
     }
 
     /**
-     * Starts the indeterminate progress animation.
+     * Starts the indeterminate progress animation. The animation pauses on its own while the
+     * button is not attached to a window, hidden, in a hidden window or clipped out of view, and
+     * continues in phase once it can be seen again.
      */
     public void startAnimating() {
         if (indeterminate && !isAnimating) {
             isAnimating = true;
-            animationHandler.sendEmptyMessage(0);
+            progressDrawable.setAnimating(true);
+            resetFrameTime();
+            AnimationTicker.getInstance().register(animationCallback);
+            // suspends an animation started before the button is attached or while it is
+            // clipped, the listeners only report later changes
+            checkClipped();
+            updateAnimationSuspension();
+        }
+    }
+
+    /**
+     * Returns true if the animation can be seen: the button is not detached, it and its window
+     * are visible and it is not clipped away entirely.
+     */
+    private boolean isAnimationVisible() {
+        boolean shown = getWindowToken() == null ? getVisibility() == VISIBLE : isShown();
+        return shown && attachedToWindow && windowVisibility == VISIBLE && !clipped;
+    }
+
+    /**
+     * Pauses the running animation when it can not be seen and resumes it when it can.
+     */
+    private void updateAnimationSuspension() {
+        if (!isAnimating) {
+            return;
+        }
+        boolean visible = isAnimationVisible();
+        if (visible && animationSuspended) {
+            resumeAnimation();
+        } else if (!visible && !animationSuspended) {
+            suspendAnimation();
         }
     }
 
+    /**
+     * Stops delivering animation frames until {@link #resumeAnimation()}.
+     */
+    private void suspendAnimation() {
+        animationSuspended = true;
+        suspendedAtNanos = System.nanoTime();
+        AnimationTicker.getInstance().unregister(animationCallback);
+    }
+
+    /**
+     * Restarts a paused animation in phase: it continues where it would have been had it kept
+     * running.
+     */
+    private void resumeAnimation() {
+        animationSuspended = false;
+        long suspendedNanos = System.nanoTime() - suspendedAtNanos;
+        progressModel.advanceInPhase(suspendedNanos, getAnimationSpeed());
+        invalidateArc();
+        resetFrameTime();
+        AnimationTicker.getInstance().register(animationCallback);
+    }
+
     /**
      * Stops the indeterminate progress animation.
      */
     public void stopAnimating() {
         if (isAnimating) {
-            animationHandler.removeMessages(0);
-            progress = 0;
-            reverse = false;
-            startingPoint = startDegrees;
-            setProgressStart(progress, startingPoint);
+            AnimationTicker.getInstance().unregister(animationCallback);
+            animationSuspended = false;
+            boolean comet = progressDrawable.isComet();
+            progressModel.reset();
             isAnimating = false;
-            invalidate();
+            progressDrawable.setAnimating(false);
+            if (comet) {
+                invalidate();
+            } else {
+                invalidateArc();
+            }
+            flushMetrics();
+        }
+    }
+
+    /**
+     * Reports the last, partial window of the metrics, if any.
+     */
+    private void flushMetrics() {
+        RenderMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.flush();
+        }
+    }
+
+    /**
+     * Forgets the previous animation frame, so the next frame does not advance the animation.
+     */
+    private void resetFrameTime() {
+        lastFrameTimeNanos = 0;
+        if (framePacer != null) {
+            framePacer.reset();
         }
     }
 
     /**
      * Handle the indeterminate progress animation
+     *
+     * @param frameTimeNanos The time of the current frame in nanoseconds.
+     * @return true if the animation continues on the next frame.
      */
-    private void handleAnimation() {
+    private boolean handleAnimation(long frameTimeNanos) {
         if (indeterminate) {
-            if (progress >= maxProgress) {
-                reverse = true;
-                startingPoint = startDegrees;
-                progress = maxProgress;
-            } else if (progress <= 0) {
-                reverse = false;
-                startingPoint = startDegrees;
-                progress = 0;
+            if (framePacer != null && !framePacer.onFrame(frameTimeNanos)) {
+                // skipped, the next update covers the time of this frame
+                return true;
             }
-            if (reverse) {
-                float degrees1 = MAX_DEGREES * progress / maxProgress;
-                progress -= animationStep;
-                float degrees2 = MAX_DEGREES * progress / maxProgress;
-                float diff = degrees1 - degrees2;
-                startingPoint += diff;
-            } else {
-                progress += animationStep;
+            TraceCompat.beginSection(TRACE_ANIMATION);
+            try {
+                long elapsed = lastFrameTimeNanos == 0 ? 0 : frameTimeNanos - lastFrameTimeNanos;
+                lastFrameTimeNanos = frameTimeNanos;
+                RenderMetrics metrics = this.metrics;
+                if (metrics != null) {
+                    metrics.recordAnimationTick(frameTimeNanos, elapsed, getExpectedFrameNanos());
+                }
+                progressModel.advanceByTime(
+                        Math.min(elapsed, MAX_FRAME_DELTA_NANOS),
+                        getAnimationSpeed());
+                invalidateArc();
+            } finally {
+                TraceCompat.endSection();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the expected time between two animation frames: the interval chosen by adaptive
+     * pacing, or else the animation delay, but at least one frame.
+     */
+    private long getExpectedFrameNanos() {
+        if (framePacer != null) {
+            return framePacer.getUpdateIntervalNanos();
+        }
+        long intervalMillis = Math.max(
+                progressDrawable.getAnimationDelay(),
+                FrameScheduler.FALLBACK_FRAME_INTERVAL_MS);
+        return intervalMillis * NANOS_PER_MILLI;
+    }
+
+    /**
+     * Callback delivering the progress posted from other threads. It is posted to the main thread
+     * once per batch of posted values or segment updates and applies them on the next frame.
+     */
+    static class PendingProgressCallback
+            implements Runnable, FrameTicker.Callback, SegmentedProgress.Listener {
+        private final WeakReference<ProgressButton> progressButtonReference;
+
+        PendingProgressCallback(ProgressButton progressButton) {
+            progressButtonReference = new WeakReference<>(progressButton);
+        }
+
+        @Override
+        public void run() {
+            AnimationTicker.getInstance().register(this);
+        }
+
+        @Override
+        public void onSegmentsChanged(SegmentedProgress progress) {
+            MAIN_HANDLER.post(this);
+        }
+
+        @Override
+        public boolean onAnimationFrame(long frameTimeNanos) {
+            ProgressButton progressButton = progressButtonReference.get();
+            if (progressButton != null) {
+                progressButton.applyPendingProgress();
             }
-            setProgressStart(progress, startingPoint);
-            animationHandler.sendEmptyMessageDelayed(0, animationDelay);
+            return false;
         }
     }
 
     /**
-     * Handler class for handling the indeterminate progress animation
+     * Sends the progress announcement delayed by the minimum interval.
      */
-    static class AnimationHandler extends Handler {
+    static class AnnouncementCallback implements Runnable {
         private final WeakReference<ProgressButton> progressButtonReference;
 
-        AnimationHandler(ProgressButton progressButton) {
+        AnnouncementCallback(ProgressButton progressButton) {
             progressButtonReference = new WeakReference<>(progressButton);
         }
 
         @Override
-        public void handleMessage(Message msg) {
+        public void run() {
             ProgressButton progressButton = progressButtonReference.get();
             if (progressButton != null) {
-                progressButton.handleAnimation();
+                progressButton.sendPendingAnnouncement();
             }
         }
     }
 
+    /**
+     * Releases the static layers of detached buttons when the system asks the application to
+     * trim its memory. Buttons are held weakly, a discarded button frees its layer with it.
+     */
+    static final class StaticLayerReleaser implements ComponentCallbacks2 {
+        private final WeakHashMap<ProgressButton, Boolean> detachedButtons = new WeakHashMap<>();
+
+        private StaticLayerReleaser() {
+        }
+
+        static StaticLayerReleaser register(Context context) {
+            StaticLayerReleaser releaser = new StaticLayerReleaser();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+                context.getApplicationContext().registerComponentCallbacks(releaser);
+            }
+            return releaser;
+        }
+
+        void add(ProgressButton progressButton) {
+            detachedButtons.put(progressButton, Boolean.TRUE);
+        }
+
+        void remove(ProgressButton progressButton) {
+            detachedButtons.remove(progressButton);
+        }
+
+        /**
+         * Releases the layers of all detached buttons.
+         */
+        void releaseAll() {
+            for (ProgressButton progressButton : new ArrayList<>(detachedButtons.keySet())) {
+                progressButton.releaseStaticLayer();
+            }
+            detachedButtons.clear();
+        }
+
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_RUNNING_LOW) {
+                releaseAll();
+            }
+        }
+
+        @Override
+        public void onLowMemory() {
+            releaseAll();
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+            // layers are redrawn when the style of their button changes
+        }
+    }
+
+    /**
+     * Frame callback moving the progress toward the target of an animated progress change.
+     */
+    static class TweenCallback implements FrameTicker.Callback {
+        private final WeakReference<ProgressButton> progressButtonReference;
+
+        TweenCallback(ProgressButton progressButton) {
+            progressButtonReference = new WeakReference<>(progressButton);
+        }
+
+        @Override
+        public boolean onAnimationFrame(long frameTimeNanos) {
+            ProgressButton progressButton = progressButtonReference.get();
+            return progressButton != null && progressButton.handleProgressTween(frameTimeNanos);
+        }
+    }
+
+    /**
+     * Frame callback for handling the indeterminate progress animation
+     */
+    static class AnimationCallback implements FrameTicker.Callback {
+        private final WeakReference<ProgressButton> progressButtonReference;
+
+        AnimationCallback(ProgressButton progressButton) {
+            progressButtonReference = new WeakReference<>(progressButton);
+        }
+
+        @Override
+        public boolean onAnimationFrame(long frameTimeNanos) {
+            ProgressButton progressButton = progressButtonReference.get();
+            return progressButton != null && progressButton.handleAnimation(frameTimeNanos);
+        }
+    }
+
+    /**
+     * Listener re-checking whether the button is clipped away while it animates, after every
+     * scroll or layout of the window.
+     */
+    static class ClipListener implements ViewTreeObserver.OnScrollChangedListener,
+            ViewTreeObserver.OnGlobalLayoutListener {
+        private final ProgressButton progressButton;
+
+        ClipListener(ProgressButton progressButton) {
+            this.progressButton = progressButton;
+        }
+
+        @Override
+        public void onScrollChanged() {
+            progressButton.checkClipped();
+        }
+
+        @Override
+        public void onGlobalLayout() {
+            progressButton.checkClipped();
+        }
+    }
+
+
+    /**
+     * The state saved by {@link #onSaveInstanceState()}.
+     */
+    static class SavedState extends BaseSavedState {
+        float progress;
+        float maxProgress;
+        float startingPoint;
+        int stateFlags;
+
+        SavedState(Parcelable superState) {
+            super(superState);
+        }
+
+        SavedState(Parcel source) {
+            super(source);
+            progress = source.readFloat();
+            maxProgress = source.readFloat();
+            startingPoint = source.readFloat();
+            stateFlags = source.readInt();
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+            super.writeToParcel(out, flags);
+            out.writeFloat(progress);
+            out.writeFloat(maxProgress);
+            out.writeFloat(startingPoint);
+            out.writeInt(stateFlags);
+        }
+
+        public static final Parcelable.Creator<SavedState> CREATOR =
+                new Parcelable.Creator<SavedState>() {
+                    @Override
+                    public SavedState createFromParcel(Parcel source) {
+                        return new SavedState(source);
+                    }
+
+                    @Override
+                    public SavedState[] newArray(int size) {
+                        return new SavedState[size];
+                    }
+                };
+    }
+
 }
@@ -0,0 +1,1049 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package be.appfoundry.progressbutton;
+
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.SweepGradient;
+import android.graphics.drawable.Animatable;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.ColorInt;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+import be.appfoundry.progressbutton.core.FrameTicker;
+import be.appfoundry.progressbutton.core.ProgressModel;
+import be.appfoundry.progressbutton.core.SegmentedProgress;
+import be.appfoundry.progressbutton.util.AnimationTicker;
+import be.appfoundry.progressbutton.util.FrameScheduler;
+
+/**
+ * Draws the ring of a {@link ProgressButton} without a view, for toolbars, compound drawables of
+ * list items or notifications.
+ * <p>
+ * The style of the ring, its colors, stroke width and draw mode, lives in a shared
+ * {@link ConstantState} together with the paints drawing it. Drawables created from the same
+ * constant state share a single copy of them; only the progress is kept per drawable. The state
+ * never changes: a setter switches this drawable to the interned state of the new style, so
+ * {@link #mutate()} is not needed and drawables styled the same share one state, however they
+ * were styled. The alpha and the color filter belong to the drawable, not to the shared style;
+ * they are applied to the whole ring through a layer.
+ * <p>
+ * The ring fills the largest square centered in the bounds. When started, the drawable runs the
+ * indeterminate animation of the button. With a {@link SegmentedProgress} set, the ring is split
+ * in one part per segment and each part shows the progress of its segment.
+ */
+public class ProgressDrawable extends Drawable implements Animatable {
+
+    /**
+     * Draw mode painting the border, a pie wedge for the progress and the background on top of
+     * it. Pixels inside the ring are painted up to three times.
+     */
+    public static final int DRAW_MODE_PIE = 0;
+    /**
+     * Draw mode painting the track and the progress as stroked arcs and filling only the inner
+     * disc, so every pixel is painted about once.
+     */
+    public static final int DRAW_MODE_RING = 1;
+    /**
+     * Draw mode painting the progress as a ring like {@link #DRAW_MODE_RING}, filled with a
+     * cached sweep gradient. The gradient is only rotated per frame, never rebuilt, and running
+     * indeterminate animations can be drawn as a comet with a fading tail.
+     */
+    public static final int DRAW_MODE_SWEEP = 2;
+
+    static final int DEFAULT_COLOR = 0xFFFFFFFF;
+    static final int DEFAULT_STROKE_COLOR = 0x33000000;
+    static final int DEFAULT_PROGRESS_COLOR = 0xFF000000;
+    static final float DEFAULT_STROKE_WIDTH = 20f;
+    static final float DEFAULT_ANIMATION_SPEED = 360f;
+    static final float DEFAULT_ANIMATION_STEP = 1f;
+
+    private static final int MAX_DEGREES = ProgressModel.MAX_DEGREES;
+    private static final int FULL_ALPHA = 255;
+    private static final float MILLIS_PER_SECOND = 1000f;
+    private static final long MAX_FRAME_DELTA_NANOS = 100000000L;
+    private static final int HASH_MULTIPLIER = 31;
+    private static final int RGB_MASK = 0x00FFFFFF;
+
+    /**
+     * The style shared with other drawables of the same constant state.
+     */
+    private ProgressState state;
+    /**
+     * The progress and animation state of this drawable.
+     */
+    private final ProgressModel progressModel;
+    /**
+     * The rectangle of the outer circle.
+     */
+    private final RectF circleRectF = new RectF();
+    /**
+     * The rectangle of the center line of the ring.
+     */
+    private final RectF ringRect = new RectF();
+    /**
+     * The progress per segment, null when a single progress value is shown.
+     */
+    private SegmentedProgress segmentedProgress;
+    /**
+     * The path collecting the progress of all segments, so they are drawn in a single call.
+     */
+    private final Path segmentPath = new Path();
+    /**
+     * The paint of {@link #DRAW_MODE_SWEEP}, created on first use. It belongs to this drawable
+     * because its shader is rotated for the progress of this drawable.
+     */
+    private Paint sweepPaint;
+    private SweepGradient sweepShader;
+    private Matrix sweepMatrix;
+    /**
+     * The colors {@link #sweepShader} was created with.
+     */
+    private int sweepStartColor;
+    private int sweepEndColor;
+    /**
+     * True while a view drawing with this drawable runs the indeterminate animation.
+     */
+    private boolean animating;
+    private float centerX;
+    private float centerY;
+    private float radius;
+    private boolean running;
+    private long lastFrameTimeNanos;
+    private final AnimationCallback animationCallback = new AnimationCallback(this);
+    private int alpha = FULL_ALPHA;
+    private ColorFilter colorFilter;
+    /**
+     * The paint compositing the ring with {@link #alpha} and {@link #colorFilter}, created on
+     * first use and kept, so animating the alpha does not allocate.
+     */
+    private Paint layerPaint;
+
+    /**
+     * Creates a drawable with the default style.
+     */
+    public ProgressDrawable() {
+        this(ProgressState.intern(new ProgressState.Builder()), new ProgressModel());
+    }
+
+    ProgressDrawable(ProgressState state, ProgressModel progressModel) {
+        this.state = state;
+        this.progressModel = progressModel;
+    }
+
+    /**
+     * Returns the progress per segment, or null when a single progress value is shown.
+     */
+    public SegmentedProgress getSegmentedProgress() {
+        return segmentedProgress;
+    }
+
+    /**
+     * Shows the progress per segment, or a single progress value when null. Every segment gets a
+     * part of the ring proportional to its size, starting at the start degrees. The segments are
+     * read on every draw, so call {@link #invalidateSelf()} when they changed.
+     */
+    public void setSegmentedProgress(SegmentedProgress segmentedProgress) {
+        this.segmentedProgress = segmentedProgress;
+        invalidateSelf();
+    }
+
+    /**
+     * Returns the maximum progress.
+     */
+    public float getMaxProgress() {
+        return progressModel.getMaxProgress();
+    }
+
+    /**
+     * Sets the maximum progress.
+     */
+    public void setMaxProgress(float maxProgress) {
+        progressModel.setMaxProgress(maxProgress);
+        invalidateSelf();
+    }
+
+    /**
+     * Returns the current progress.
+     */
+    public float getProgress() {
+        return progressModel.getProgress();
+    }
+
+    /**
+     * Sets the current progress. (must be between 0 and maxProgress)
+     */
+    public void setProgress(float progress) {
+        progressModel.setProgress(progress);
+        invalidateSelf();
+    }
+
+    /**
+     * Returns the background color.
+     */
+    public int getColor() {
+        return state.color;
+    }
+
+    /**
+     * Sets the background color.
+     */
+    public void setColor(@ColorInt int color) {
+        if (state.color != color) {
+            applyStyle(state.buildUpon().setColor(color));
+        }
+    }
+
+    /**
+     * Returns the stroke color.
+     */
+    public int getStrokeColor() {
+        return state.strokeColor;
+    }
+
+    /**
+     * Sets the stroke color.
+     */
+    public void setStrokeColor(@ColorInt int strokeColor) {
+        if (state.strokeColor != strokeColor) {
+            applyStyle(state.buildUpon().setStrokeColor(strokeColor));
+        }
+    }
+
+    /**
+     * Returns the color of the progress indicator.
+     */
+    public int getProgressColor() {
+        return state.progressColor;
+    }
+
+    /**
+     * Sets the color of the progress indicator.
+     */
+    public void setProgressColor(@ColorInt int progressColor) {
+        if (state.progressColor != progressColor) {
+            applyStyle(state.buildUpon().setProgressColor(progressColor));
+        }
+    }
+
+    /**
+     * Returns the color at the start of the progress gradient of {@link #DRAW_MODE_SWEEP}.
+     */
+    public int getGradientStartColor() {
+        return state.gradientStartColor;
+    }
+
+    /**
+     * Returns the color at the end of the progress gradient of {@link #DRAW_MODE_SWEEP}.
+     */
+    public int getGradientEndColor() {
+        return state.gradientEndColor;
+    }
+
+    /**
+     * Sets the colors of the progress gradient of {@link #DRAW_MODE_SWEEP}. The gradient runs
+     * once around the ring from the start degrees, the progress reveals it.
+     */
+    public void setGradientColors(@ColorInt int startColor, @ColorInt int endColor) {
+        if (state.gradientStartColor != startColor || state.gradientEndColor != endColor) {
+            applyStyle(state.buildUpon().setGradientColors(startColor, endColor));
+        }
+    }
+
+    /**
+     * Returns true if the indeterminate animation of {@link #DRAW_MODE_SWEEP} is a comet.
+     */
+    public boolean isCometTail() {
+        return state.cometTail;
+    }
+
+    /**
+     * Draws the running indeterminate animation of {@link #DRAW_MODE_SWEEP} as a comet: a head
+     * in the progress color with a tail fading out once around the ring. Each frame only rotates
+     * the gradient.
+     */
+    public void setCometTail(boolean cometTail) {
+        if (state.cometTail != cometTail) {
+            applyStyle(state.buildUpon().setCometTail(cometTail));
+        }
+    }
+
+    /**
+     * Returns the stroke width.
+     */
+    public float getStrokeWidth() {
+        return state.strokeWidth;
+    }
+
+    /**
+     * Sets the stroke width.
+     */
+    public void setStrokeWidth(float strokeWidth) {
+        if (state.strokeWidth != strokeWidth) {
+            applyStyle(state.buildUpon().setStrokeWidth(strokeWidth));
+        }
+    }
+
+    /**
+     * Returns how the ring is drawn, {@link #DRAW_MODE_PIE}, {@link #DRAW_MODE_RING} or
+     * {@link #DRAW_MODE_SWEEP}.
+     */
+    public int getDrawMode() {
+        return state.drawMode;
+    }
+
+    /**
+     * Sets how the ring is drawn, {@link #DRAW_MODE_PIE}, {@link #DRAW_MODE_RING} or
+     * {@link #DRAW_MODE_SWEEP}.
+     */
+    public void setDrawMode(int drawMode) {
+        if (drawMode != DRAW_MODE_PIE && drawMode != DRAW_MODE_RING
+                && drawMode != DRAW_MODE_SWEEP) {
+            throw new IllegalArgumentException("Unknown draw mode: " + drawMode);
+        }
+        if (state.drawMode != drawMode) {
+            applyStyle(state.buildUpon().setDrawMode(drawMode));
+        }
+    }
+
+    /**
+     * Returns true if the ends of the progress ring are rounded.
+     */
+    public boolean isRoundedCaps() {
+        return state.roundedCaps;
+    }
+
+    /**
+     * Sets if the ends of the progress ring are rounded.
+     */
+    public void setRoundedCaps(boolean roundedCaps) {
+        if (state.roundedCaps != roundedCaps) {
+            applyStyle(state.buildUpon().setRoundedCaps(roundedCaps));
+        }
+    }
+
+    /**
+     * Returns the speed of the indeterminate animation in degrees per second.
+     */
+    public float getAnimationSpeed() {
+        return state.getAnimationSpeed(progressModel.getMaxProgress());
+    }
+
+    /**
+     * Sets the speed of the indeterminate animation in degrees per second, 0 to derive it from
+     * the animation step and delay.
+     */
+    public void setAnimationSpeed(float animationSpeed) {
+        if (state.animationSpeed != animationSpeed) {
+            applyStyle(state.buildUpon().setAnimationSpeed(animationSpeed));
+        }
+    }
+
+    /**
+     * Returns the progress the indeterminate animation moves per step.
+     */
+    float getAnimationStep() {
+        return state.animationStep;
+    }
+
+    /**
+     * Sets the progress the indeterminate animation moves per step.
+     */
+    void setAnimationStep(float animationStep) {
+        if (state.animationStep != animationStep) {
+            applyStyle(state.buildUpon().setAnimationStep(animationStep));
+        }
+    }
+
+    /**
+     * Returns the delay between two steps of the indeterminate animation in milliseconds.
+     */
+    int getAnimationDelay() {
+        return state.animationDelay;
+    }
+
+    /**
+     * Sets the delay between two steps of the indeterminate animation in milliseconds.
+     */
+    void setAnimationDelay(int animationDelay) {
+        if (state.animationDelay != animationDelay) {
+            applyStyle(state.buildUpon().setAnimationDelay(animationDelay));
+        }
+    }
+
+    /**
+     * Sets the intrinsic width and height of the drawable in pixels, -1 for none. Compound
+     * drawables of text views need an intrinsic size.
+     */
+    public void setIntrinsicSize(int size) {
+        if (state.intrinsicSize != size) {
+            applyStyle(state.buildUpon().setIntrinsicSize(size));
+        }
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return state.intrinsicSize;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return state.intrinsicSize;
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        if (alpha == FULL_ALPHA && colorFilter == null) {
+            drawRing(canvas);
+            return;
+        }
+        int saveCount = canvas.saveLayer(circleRectF, layerPaint, Canvas.ALL_SAVE_FLAG);
+        drawRing(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+
+    private void drawRing(Canvas canvas) {
+        if (segmentedProgress != null) {
+            drawSegments(canvas);
+            return;
+        }
+        float startingPoint = progressModel.getStartingPoint();
+        float degrees = progressModel.getDegrees();
+        if (state.drawMode == DRAW_MODE_RING) {
+            drawRing(canvas, startingPoint, degrees, state.progressRingPaint);
+        } else if (state.drawMode == DRAW_MODE_SWEEP) {
+            drawSweep(canvas, startingPoint, degrees);
+        } else {
+            canvas.drawCircle(centerX, centerY, radius, state.strokePaint);
+            canvas.drawArc(circleRectF, startingPoint, degrees, true, state.progressPaint);
+            drawInnerCircle(canvas);
+        }
+    }
+
+    /**
+     * Draws the track and the progress indicator as arcs of the stroke width, then the inner
+     * disc. The track covers exactly the part of the ring the indicator does not.
+     */
+    private void drawRing(Canvas canvas, float startingPoint, float degrees, Paint paint) {
+        RectF ringRectF = getRingRect();
+        float sweep = Math.min(Math.abs(degrees), MAX_DEGREES);
+        if (sweep < MAX_DEGREES) {
+            float trackStart = degrees < 0 ? startingPoint : startingPoint + degrees;
+            canvas.drawArc(ringRectF, trackStart, MAX_DEGREES - sweep, false, state.trackPaint);
+        }
+        if (sweep > 0) {
+            canvas.drawArc(ringRectF, startingPoint, degrees, false, paint);
+        }
+        drawInnerCircle(canvas);
+    }
+
+    /**
+     * Draws the ring with the sweep gradient. A comet is a full circle with the gradient turned
+     * to the moving end of the indicator; otherwise the gradient is fixed at the start degrees and
+     * drawn as the arc of the progress.
+     */
+    private void drawSweep(Canvas canvas, float startingPoint, float degrees) {
+        boolean comet = isComet();
+        Paint paint = getSweepPaint(startingPoint, degrees, comet);
+        if (comet) {
+            float ringRadius = radius - state.strokeWidth / 2;
+            canvas.drawCircle(centerX, centerY, ringRadius, state.trackPaint);
+            canvas.drawCircle(centerX, centerY, ringRadius, paint);
+            drawInnerCircle(canvas);
+        } else {
+            drawRing(canvas, startingPoint, degrees, paint);
+        }
+    }
+
+    /**
+     * Returns true if the indeterminate animation is drawn as a comet.
+     */
+    boolean isComet() {
+        return state.drawMode == DRAW_MODE_SWEEP && state.cometTail && (running || animating);
+    }
+
+    /**
+     * Returns the sweep paint with its shader turned for the given indicator, or fixed at the
+     * start degrees when not drawing a comet. The shader is only created again when its colors
+     * change.
+     */
+    private Paint getSweepPaint(float startingPoint, float degrees, boolean comet) {
+        if (sweepPaint == null) {
+            sweepPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            sweepPaint.setStyle(Paint.Style.STROKE);
+            sweepMatrix = new Matrix();
+        }
+        int startColor = comet ? state.progressColor & RGB_MASK : state.gradientStartColor;
+        int endColor = comet ? state.progressColor : state.gradientEndColor;
+        if (sweepShader == null || startColor != sweepStartColor || endColor != sweepEndColor) {
+            // centered on the origin, the matrix moves it to the center of the ring
+            sweepShader = new SweepGradient(0, 0, startColor, endColor);
+            sweepStartColor = startColor;
+            sweepEndColor = endColor;
+            sweepPaint.setShader(sweepShader);
+        }
+        float rotation;
+        if (comet) {
+            // the gradient ends at the moving end of the indicator: the head of the comet
+            rotation = progressModel.isReverse() ? startingPoint : startingPoint + degrees;
+        } else {
+            rotation = progressModel.getStartDegrees();
+        }
+        sweepMatrix.setRotate(rotation);
+        sweepMatrix.postTranslate(centerX, centerY);
+        sweepShader.setLocalMatrix(sweepMatrix);
+        sweepPaint.setStrokeWidth(state.strokeWidth);
+        sweepPaint.setStrokeCap(
+                state.roundedCaps && !comet ? Paint.Cap.ROUND : Paint.Cap.BUTT);
+        return sweepPaint;
+    }
+
+    /**
+     * Tells the drawable whether the view drawing it runs the indeterminate animation.
+     */
+    void setAnimating(boolean animating) {
+        this.animating = animating;
+    }
+
+    /**
+     * Draws the progress of all segments. The track or the border is drawn in full first, then
+     * the progress of every segment is drawn in a single pass from one path. In sweep mode the
+     * segments show the gradient fixed at the start degrees, never a comet.
+     */
+    private void drawSegments(Canvas canvas) {
+        if (state.drawMode != DRAW_MODE_PIE) {
+            canvas.drawCircle(centerX, centerY, radius - state.strokeWidth / 2, state.trackPaint);
+            canvas.drawPath(buildSegmentPath(false), getSegmentRingPaint());
+        } else {
+            canvas.drawCircle(centerX, centerY, radius, state.strokePaint);
+            canvas.drawPath(buildSegmentPath(true), state.progressPaint);
+        }
+        drawInnerCircle(canvas);
+    }
+
+    /**
+     * Returns the paint of the segments drawn as arcs of the ring.
+     */
+    private Paint getSegmentRingPaint() {
+        return state.drawMode == DRAW_MODE_SWEEP
+                ? getSweepPaint(0, 0, false)
+                : state.progressRingPaint;
+    }
+
+    /**
+     * Collects the progress of every segment in {@link #segmentPath}, as pie wedges or as arcs of
+     * the ring.
+     */
+    private Path buildSegmentPath(boolean wedges) {
+        SegmentedProgress segments = segmentedProgress;
+        RectF oval = wedges ? circleRectF : getRingRect();
+        float totalSize = segments.getTotalSize();
+        float start = progressModel.getStartDegrees();
+        segmentPath.rewind();
+        for (int i = 0, count = segments.getSegmentCount(); i < count; i++) {
+            float share = MAX_DEGREES * segments.getSegmentSize(i) / totalSize;
+            float sweep = share * segments.getFraction(i);
+            if (sweep > 0) {
+                if (wedges) {
+                    segmentPath.moveTo(centerX, centerY);
+                    segmentPath.arcTo(oval, start, sweep, false);
+                    segmentPath.close();
+                } else {
+                    segmentPath.addArc(oval, start, sweep);
+                }
+            }
+            start += share;
+        }
+        return segmentPath;
+    }
+
+    /**
+     * Draws the parts that do not depend on the progress: the outer and the inner circle.
+     */
+    void drawStaticLayers(Canvas canvas) {
+        canvas.drawCircle(centerX, centerY, radius, state.strokePaint);
+        drawInnerCircle(canvas);
+    }
+
+    /**
+     * Draws only the progress indicator, as a ring.
+     */
+    void drawProgressRing(Canvas canvas) {
+        if (segmentedProgress != null) {
+            canvas.drawPath(buildSegmentPath(false), getSegmentRingPaint());
+            return;
+        }
+        float startingPoint = progressModel.getStartingPoint();
+        float degrees = progressModel.getDegrees();
+        Paint paint = state.progressRingPaint;
+        if (state.drawMode == DRAW_MODE_SWEEP) {
+            boolean comet = isComet();
+            paint = getSweepPaint(startingPoint, degrees, comet);
+            if (comet) {
+                canvas.drawCircle(centerX, centerY, radius - state.strokeWidth / 2, paint);
+                return;
+            }
+        }
+        if (degrees != 0) {
+            canvas.drawArc(getRingRect(), startingPoint, degrees, false, paint);
+        }
+    }
+
+    private void drawInnerCircle(Canvas canvas) {
+        canvas.drawCircle(centerX, centerY, radius - state.strokeWidth, state.circlePaint);
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        super.onBoundsChange(bounds);
+        setCircle(
+                bounds.exactCenterX(),
+                bounds.exactCenterY(),
+                Math.min(bounds.width(), bounds.height()) / 2f);
+    }
+
+    /**
+     * Positions the outer circle, regardless of the bounds.
+     */
+    void setCircle(float centerX, float centerY, float radius) {
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.radius = radius;
+        circleRectF.set(centerX - radius, centerY - radius, centerX + radius, centerY + radius);
+    }
+
+    /**
+     * Returns the rectangle of the center line of the ring, for the current stroke width.
+     */
+    private RectF getRingRect() {
+        float inset = state.strokeWidth / 2;
+        ringRect.set(circleRectF);
+        ringRect.inset(inset, inset);
+        return ringRect;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        if (this.alpha != alpha) {
+            this.alpha = alpha;
+            getLayerPaint().setAlpha(alpha);
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public int getAlpha() {
+        return alpha;
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        if (this.colorFilter != colorFilter) {
+            this.colorFilter = colorFilter;
+            getLayerPaint().setColorFilter(colorFilter);
+            invalidateSelf();
+        }
+    }
+
+    private Paint getLayerPaint() {
+        if (layerPaint == null) {
+            layerPaint = new Paint();
+        }
+        return layerPaint;
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    @Override
+    public ConstantState getConstantState() {
+        return state;
+    }
+
+    /**
+     * Switches this drawable to the interned state of the given style. The old state is left
+     * untouched, so drawables sharing it keep their style.
+     */
+    private void applyStyle(ProgressState.Builder style) {
+        ProgressState styled = ProgressState.intern(style);
+        if (styled != state) {
+            state = styled;
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * Returns the progress and animation state drawn by this drawable.
+     */
+    ProgressModel getProgressModel() {
+        return progressModel;
+    }
+
+    @Override
+    public void start() {
+        if (!running) {
+            running = true;
+            lastFrameTimeNanos = 0;
+            AnimationTicker.getInstance().register(animationCallback);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (running) {
+            running = false;
+            AnimationTicker.getInstance().unregister(animationCallback);
+            progressModel.reset();
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private boolean handleAnimation(long frameTimeNanos) {
+        if (!running) {
+            return false;
+        }
+        long elapsed = lastFrameTimeNanos == 0 ? 0 : frameTimeNanos - lastFrameTimeNanos;
+        lastFrameTimeNanos = frameTimeNanos;
+        progressModel.advanceByTime(
+                Math.min(elapsed, MAX_FRAME_DELTA_NANOS),
+                state.getAnimationSpeed(progressModel.getMaxProgress()));
+        invalidateSelf();
+        return true;
+    }
+
+    /**
+     * The style shared by all drawables created from it: colors, stroke width, draw mode, the
+     * parameters of the indeterminate animation and the paints drawing them.
+     * <p>
+     * A state never changes once built, so it can be shared by any number of drawables and
+     * created on any thread. States are only created through {@link #intern(Builder)}, so
+     * drawables styled the same share one state and one set of paints; a drawable changes its
+     * style by switching to the interned state of the new style.
+     */
+    static final class ProgressState extends ConstantState {
+        /**
+         * The interned states by style, held weakly so a style is dropped once no drawable uses
+         * it. Guarded by the class.
+         */
+        private static final WeakHashMap<Builder, WeakReference<ProgressState>> INTERNED =
+                new WeakHashMap<>();
+
+        final int color;
+        final int strokeColor;
+        final int progressColor;
+        final float strokeWidth;
+        final int drawMode;
+        final boolean roundedCaps;
+        final int gradientStartColor;
+        final int gradientEndColor;
+        final boolean cometTail;
+        final float animationStep;
+        final int animationDelay;
+        final float animationSpeed;
+        final int intrinsicSize;
+        /**
+         * A copy of the style this state was built from. It is the key of the interned entry, so
+         * the entry lives as long as the state.
+         */
+        private final Builder style;
+
+        /**
+         * The Paint for the inner circle.
+         */
+        final Paint circlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        /**
+         * The Paint for the outer circle.
+         */
+        final Paint strokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        /**
+         * The Paint for the progress indicator as a pie wedge.
+         */
+        final Paint progressPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        /**
+         * The Paint for the progress indicator as a ring.
+         */
+        final Paint progressRingPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        /**
+         * The Paint for the part of the ring not covered by the progress indicator.
+         */
+        final Paint trackPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+        private ProgressState(Builder builder) {
+            style = new Builder(builder);
+            color = builder.color;
+            strokeColor = builder.strokeColor;
+            progressColor = builder.progressColor;
+            strokeWidth = builder.strokeWidth;
+            drawMode = builder.drawMode;
+            roundedCaps = builder.roundedCaps;
+            gradientStartColor = builder.gradientStartColor;
+            gradientEndColor = builder.gradientEndColor;
+            cometTail = builder.cometTail;
+            animationStep = builder.animationStep;
+            animationDelay = builder.animationDelay;
+            animationSpeed = builder.animationSpeed;
+            intrinsicSize = builder.intrinsicSize;
+            initPaints();
+        }
+
+        /**
+         * Returns the interned state with the given style, interning a new one when there is
+         * none yet. The builder is not retained, so it can be reused. Can be called from any
+         * thread.
+         */
+        static synchronized ProgressState intern(Builder builder) {
+            WeakReference<ProgressState> reference = INTERNED.get(builder);
+            ProgressState interned = reference == null ? null : reference.get();
+            if (interned == null) {
+                interned = new ProgressState(builder);
+                INTERNED.put(interned.style, new WeakReference<>(interned));
+            }
+            return interned;
+        }
+
+        /**
+         * Returns a builder holding the style of this state.
+         */
+        Builder buildUpon() {
+            return new Builder(style);
+        }
+
+        /**
+         * Returns the speed of the indeterminate animation in degrees per second. When no speed
+         * is set, it is derived from the animation step and delay.
+         */
+        float getAnimationSpeed(float maxProgress) {
+            if (animationSpeed > 0) {
+                return animationSpeed;
+            }
+            long stepInterval = Math.max(animationDelay, FrameScheduler.FALLBACK_FRAME_INTERVAL_MS);
+            return MAX_DEGREES * animationStep / maxProgress * MILLIS_PER_SECOND / stepInterval;
+        }
+
+        /**
+         * Applies the style to the paints. Only called while the state is built.
+         */
+        private void initPaints() {
+            progressRingPaint.setStyle(Paint.Style.STROKE);
+            trackPaint.setStyle(Paint.Style.STROKE);
+            circlePaint.setColor(color);
+            strokePaint.setColor(strokeColor);
+            progressPaint.setColor(progressColor);
+            progressRingPaint.setColor(progressColor);
+            trackPaint.setColor(strokeColor);
+            progressRingPaint.setStrokeWidth(strokeWidth);
+            trackPaint.setStrokeWidth(strokeWidth);
+            progressRingPaint.setStrokeCap(roundedCaps ? Paint.Cap.ROUND : Paint.Cap.BUTT);
+        }
+
+        @Override
+        public Drawable newDrawable() {
+            return new ProgressDrawable(this, new ProgressModel());
+        }
+
+        @Override
+        public Drawable newDrawable(Resources res) {
+            return newDrawable();
+        }
+
+        @Override
+        public int getChangingConfigurations() {
+            return 0;
+        }
+
+        /**
+         * Collects a style for interning a {@link ProgressState}. Styles are equal
+         * when all their values are.
+         */
+        static final class Builder {
+            private int color = DEFAULT_COLOR;
+            private int strokeColor = DEFAULT_STROKE_COLOR;
+            private int progressColor = DEFAULT_PROGRESS_COLOR;
+            private float strokeWidth = DEFAULT_STROKE_WIDTH;
+            private int drawMode = DRAW_MODE_PIE;
+            private boolean roundedCaps;
+            private int gradientStartColor = DEFAULT_PROGRESS_COLOR;
+            private int gradientEndColor = DEFAULT_PROGRESS_COLOR;
+            private boolean cometTail;
+            private float animationStep = DEFAULT_ANIMATION_STEP;
+            private int animationDelay;
+            private float animationSpeed = DEFAULT_ANIMATION_SPEED;
+            private int intrinsicSize = -1;
+
+            Builder() {
+            }
+
+            Builder(Builder other) {
+                color = other.color;
+                strokeColor = other.strokeColor;
+                progressColor = other.progressColor;
+                strokeWidth = other.strokeWidth;
+                drawMode = other.drawMode;
+                roundedCaps = other.roundedCaps;
+                gradientStartColor = other.gradientStartColor;
+                gradientEndColor = other.gradientEndColor;
+                cometTail = other.cometTail;
+                animationStep = other.animationStep;
+                animationDelay = other.animationDelay;
+                animationSpeed = other.animationSpeed;
+                intrinsicSize = other.intrinsicSize;
+            }
+
+            Builder setColor(int color) {
+                this.color = color;
+                return this;
+            }
+
+            Builder setStrokeColor(int strokeColor) {
+                this.strokeColor = strokeColor;
+                return this;
+            }
+
+            Builder setProgressColor(int progressColor) {
+                this.progressColor = progressColor;
+                return this;
+            }
+
+            Builder setStrokeWidth(float strokeWidth) {
+                this.strokeWidth = strokeWidth;
+                return this;
+            }
+
+            Builder setDrawMode(int drawMode) {
+                this.drawMode = drawMode;
+                return this;
+            }
+
+            Builder setRoundedCaps(boolean roundedCaps) {
+                this.roundedCaps = roundedCaps;
+                return this;
+            }
+
+            Builder setGradientColors(int startColor, int endColor) {
+                this.gradientStartColor = startColor;
+                this.gradientEndColor = endColor;
+                return this;
+            }
+
+            Builder setCometTail(boolean cometTail) {
+                this.cometTail = cometTail;
+                return this;
+            }
+
+            Builder setAnimationStep(float animationStep) {
+                this.animationStep = animationStep;
+                return this;
+            }
+
+            Builder setAnimationDelay(int animationDelay) {
+                this.animationDelay = animationDelay;
+                return this;
+            }
+
+            /**
+             * Sets the speed of the indeterminate animation in degrees per second, 0 to derive
+             * it from the animation step and delay.
+             */
+            Builder setAnimationSpeed(float animationSpeed) {
+                this.animationSpeed = animationSpeed;
+                return this;
+            }
+
+            Builder setIntrinsicSize(int intrinsicSize) {
+                this.intrinsicSize = intrinsicSize;
+                return this;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (this == o) {
+                    return true;
+                }
+                if (!(o instanceof Builder)) {
+                    return false;
+                }
+                Builder other = (Builder) o;
+                return color == other.color
+                        && strokeColor == other.strokeColor
+                        && progressColor == other.progressColor
+                        && Float.compare(strokeWidth, other.strokeWidth) == 0
+                        && drawMode == other.drawMode
+                        && roundedCaps == other.roundedCaps
+                        && gradientStartColor == other.gradientStartColor
+                        && gradientEndColor == other.gradientEndColor
+                        && cometTail == other.cometTail
+                        && Float.compare(animationStep, other.animationStep) == 0
+                        && animationDelay == other.animationDelay
+                        && Float.compare(animationSpeed, other.animationSpeed) == 0
+                        && intrinsicSize == other.intrinsicSize;
+            }
+
+            @Override
+            public int hashCode() {
+                int result = color;
+                result = HASH_MULTIPLIER * result + strokeColor;
+                result = HASH_MULTIPLIER * result + progressColor;
+                result = HASH_MULTIPLIER * result + Float.floatToIntBits(strokeWidth);
+                result = HASH_MULTIPLIER * result + drawMode;
+                result = HASH_MULTIPLIER * result + (roundedCaps ? 1 : 0);
+                result = HASH_MULTIPLIER * result + gradientStartColor;
+                result = HASH_MULTIPLIER * result + gradientEndColor;
+                result = HASH_MULTIPLIER * result + (cometTail ? 1 : 0);
+                result = HASH_MULTIPLIER * result + Float.floatToIntBits(animationStep);
+                result = HASH_MULTIPLIER * result + animationDelay;
+                result = HASH_MULTIPLIER * result + Float.floatToIntBits(animationSpeed);
+                result = HASH_MULTIPLIER * result + intrinsicSize;
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Frame callback for the indeterminate animation of a started drawable.
+     */
+    static class AnimationCallback implements FrameTicker.Callback {
+        private final WeakReference<ProgressDrawable> drawableReference;
+
+        AnimationCallback(ProgressDrawable drawable) {
+            drawableReference = new WeakReference<>(drawable);
+        }
+
+        @Override
+        public boolean onAnimationFrame(long frameTimeNanos) {
+            ProgressDrawable drawable = drawableReference.get();
+            return drawable != null && drawable.handleAnimation(frameTimeNanos);
+        }
+    }
+
+}
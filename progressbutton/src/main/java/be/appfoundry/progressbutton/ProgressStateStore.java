@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package be.appfoundry.progressbutton;
+
+import be.appfoundry.progressbutton.core.ProgressStateMap;
+
+/**
+ * Keeps the state of {@link ProgressButton}s in a recycled list by stable item id: the progress,
+ * the starting point, the direction and the phase of a running indeterminate animation. Bind a
+ * button to the id of its item when the row is bound; the state of the item it showed before is
+ * saved and the state of the new item is restored, so running animations continue in phase and
+ * no state leaks from one row into the next.
+ * <p>
+ * <pre>
+ * public void onBindViewHolder(ViewHolder holder, int position) {
+ *     stateStore.bind(holder.progressButton, getItemId(position));
+ * }
+ * </pre>
+ * The states are kept in primitive arrays, so a store for a list of 100k items takes a few
+ * megabytes. Must be used from the main thread.
+ */
+public class ProgressStateStore {
+
+    private final ProgressStateMap states;
+
+    /**
+     * Creates an empty store.
+     */
+    public ProgressStateStore() {
+        states = new ProgressStateMap();
+    }
+
+    /**
+     * Creates an empty store holding the expected number of items without growing.
+     */
+    public ProgressStateStore(int expectedItems) {
+        states = new ProgressStateMap(expectedItems);
+    }
+
+    /**
+     * Binds a button to an item. The state of the item the button was bound to is saved first.
+     * The button shows the saved state of the new item, or an empty, stopped indicator when the
+     * item has none. Binding a button to the item it already shows does nothing.
+     */
+    public void bind(ProgressButton button, long id) {
+        if (button.getStateStore() == this && button.getStateId() == id) {
+            return;
+        }
+        long nowNanos = System.nanoTime();
+        save(button, nowNanos);
+        button.setStateStore(this, id);
+        int index = states.indexOf(id);
+        if (index >= 0) {
+            button.restoreState(states, index, nowNanos);
+        } else {
+            button.resetState();
+        }
+    }
+
+    /**
+     * Saves the state of a button and unbinds it, for instance when its row is recycled.
+     */
+    public void unbind(ProgressButton button) {
+        if (button.getStateStore() == this) {
+            save(button, System.nanoTime());
+            button.setStateStore(null, 0);
+        }
+    }
+
+    /**
+     * Returns true if the store has a state for an item.
+     */
+    public boolean contains(long id) {
+        return states.contains(id);
+    }
+
+    /**
+     * Forgets the state of an item, for instance when it is removed from the list.
+     */
+    public void remove(long id) {
+        states.remove(id);
+    }
+
+    /**
+     * Forgets the states of all items.
+     */
+    public void clear() {
+        states.clear();
+    }
+
+    /**
+     * Returns the number of items with a saved state.
+     */
+    public int size() {
+        return states.size();
+    }
+
+    private static void save(ProgressButton button, long nowNanos) {
+        ProgressStateStore store = button.getStateStore();
+        if (store != null) {
+            button.saveState(store.states, button.getStateId(), nowNanos);
+        }
+    }
+
+}
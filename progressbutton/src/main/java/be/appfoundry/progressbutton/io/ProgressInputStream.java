@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package be.appfoundry.progressbutton.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream counting the bytes read into a {@link ProgressTracker}. Marking is not supported,
+ * so the count never runs backwards.
+ */
+public class ProgressInputStream extends FilterInputStream {
+
+    private final ProgressTracker tracker;
+
+    public ProgressInputStream(InputStream in, ProgressTracker tracker) {
+        super(in);
+        this.tracker = tracker;
+    }
+
+    /**
+     * Returns the tracker counting the bytes of this stream.
+     */
+    public ProgressTracker getTracker() {
+        return tracker;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = in.read();
+        if (value >= 0) {
+            tracker.onBytes(1);
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+        int read = in.read(buffer, offset, count);
+        if (read > 0) {
+            tracker.onBytes(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        long skipped = in.skip(count);
+        if (skipped > 0) {
+            tracker.onBytes(skipped);
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        // not supported
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            tracker.flush();
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package be.appfoundry.progressbutton.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream counting the bytes written into a {@link ProgressTracker}. Array writes are
+ * passed to the wrapped stream as a whole.
+ */
+public class ProgressOutputStream extends FilterOutputStream {
+
+    private final ProgressTracker tracker;
+
+    public ProgressOutputStream(OutputStream out, ProgressTracker tracker) {
+        super(out);
+        this.tracker = tracker;
+    }
+
+    /**
+     * Returns the tracker counting the bytes of this stream.
+     */
+    public ProgressTracker getTracker() {
+        return tracker;
+    }
+
+    @Override
+    public void write(int value) throws IOException {
+        out.write(value);
+        tracker.onBytes(1);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int count) throws IOException {
+        out.write(buffer, offset, count);
+        tracker.onBytes(count);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            tracker.flush();
+        }
+    }
+
+}
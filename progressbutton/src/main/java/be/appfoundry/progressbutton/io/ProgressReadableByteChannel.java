@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package be.appfoundry.progressbutton.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Readable channel counting the bytes read into a {@link ProgressTracker}.
+ */
+public class ProgressReadableByteChannel implements ReadableByteChannel {
+
+    private final ReadableByteChannel channel;
+    private final ProgressTracker tracker;
+
+    public ProgressReadableByteChannel(ReadableByteChannel channel, ProgressTracker tracker) {
+        this.channel = channel;
+        this.tracker = tracker;
+    }
+
+    /**
+     * Returns the tracker counting the bytes of this channel.
+     */
+    public ProgressTracker getTracker() {
+        return tracker;
+    }
+
+    @Override
+    public int read(ByteBuffer buffer) throws IOException {
+        int read = channel.read(buffer);
+        if (read > 0) {
+            tracker.onBytes(read);
+        }
+        return read;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            tracker.flush();
+        }
+    }
+
+}
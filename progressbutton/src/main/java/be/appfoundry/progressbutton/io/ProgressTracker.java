@@ -0,0 +1,257 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package be.appfoundry.progressbutton.io;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import be.appfoundry.progressbutton.ProgressButton;
+
+/**
+ * Counts transferred bytes and drives a {@link ProgressButton} with them. Reports are sampled:
+ * the button is only updated once the configured byte delta or time interval has passed, and
+ * then through {@link ProgressButton#postProgress(float)}, so the copy loop never touches the
+ * UI thread directly.
+ * <p>
+ * A tracker is meant to be used by one thread at a time, typically the thread doing the copy.
+ */
+public class ProgressTracker {
+
+    private static final long DEFAULT_MIN_INTERVAL_NANOS = 16000000L;
+    private static final long DEFAULT_TRANSFER_CHUNK_SIZE = 1024 * 1024;
+    private static final long NANOS_PER_MILLI = 1000000L;
+    private static final int CLOCK_CHECK_CALLS = 16;
+    private static final long CLOCK_CHECK_BYTES = 1024;
+
+    /**
+     * The button showing the progress, may be null when {@link #onReport(long)} is overridden.
+     */
+    private final ProgressButton progressButton;
+    /**
+     * The total number of bytes to transfer.
+     */
+    private final long totalBytes;
+    /**
+     * The number of bytes transferred so far.
+     */
+    private long bytes;
+    /**
+     * The number of bytes at the last report.
+     */
+    private long reportedBytes;
+    /**
+     * The time of the last report in nanoseconds.
+     */
+    private long reportedTimeNanos;
+    /**
+     * Minimum number of bytes between two reports, 0 to disable.
+     */
+    private long minBytesDelta;
+    /**
+     * Minimum time between two reports in nanoseconds, 0 to disable.
+     */
+    private long minIntervalNanos = DEFAULT_MIN_INTERVAL_NANOS;
+    /**
+     * The size of the chunks in which zero-copy transfers are reported.
+     */
+    private long transferChunkSize = DEFAULT_TRANSFER_CHUNK_SIZE;
+    /**
+     * The number of calls to {@link #onBytes(long)} left before the clock is read again.
+     */
+    private int callsUntilClockCheck;
+    /**
+     * The number of bytes at which the clock is read again, whatever the number of calls.
+     */
+    private long clockCheckBytes;
+
+    /**
+     * Creates a tracker for the given button.
+     *
+     * @param progressButton The button to drive.
+     * @param totalBytes     The total number of bytes to transfer, mapped on the maximum progress
+     *                       of the button.
+     */
+    public ProgressTracker(ProgressButton progressButton, long totalBytes) {
+        if (totalBytes <= 0) {
+            throw new IllegalArgumentException("Total bytes (" + totalBytes + ") must be positive");
+        }
+        this.progressButton = progressButton;
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * Returns the total number of bytes to transfer.
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Returns the number of bytes transferred so far.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the minimum number of bytes between two reports.
+     */
+    public long getMinBytesDelta() {
+        return minBytesDelta;
+    }
+
+    /**
+     * Sets the minimum number of bytes between two reports. 0 disables sampling by bytes.
+     * Defaults to 0.
+     */
+    public void setMinBytesDelta(long minBytesDelta) {
+        this.minBytesDelta = minBytesDelta;
+    }
+
+    /**
+     * Returns the minimum time between two reports in milliseconds.
+     */
+    public long getMinIntervalMillis() {
+        return minIntervalNanos / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Sets the minimum time between two reports in milliseconds. 0 disables sampling by time.
+     * Defaults to 16, about one frame. When both sampling by bytes and by time are disabled,
+     * every transfer is reported.
+     */
+    public void setMinIntervalMillis(long minIntervalMillis) {
+        this.minIntervalNanos = minIntervalMillis * NANOS_PER_MILLI;
+    }
+
+    /**
+     * Returns the size of the chunks in which zero-copy transfers are reported.
+     */
+    public long getTransferChunkSize() {
+        return transferChunkSize;
+    }
+
+    /**
+     * Sets the size of the chunks in which zero-copy transfers are reported. Defaults to 1 MiB.
+     */
+    public void setTransferChunkSize(long transferChunkSize) {
+        if (transferChunkSize <= 0) {
+            throw new IllegalArgumentException(
+                    "Transfer chunk size (" + transferChunkSize + ") must be positive");
+        }
+        this.transferChunkSize = transferChunkSize;
+    }
+
+    /**
+     * Adds transferred bytes and reports them if the sampling thresholds are reached. The byte
+     * threshold is checked first; the clock is only read once every 16 calls or 1 KiB, so
+     * streams read a byte at a time do not pay for a clock read per byte.
+     *
+     * @param count The number of bytes transferred.
+     */
+    public void onBytes(long count) {
+        bytes += count;
+        long delta = bytes - reportedBytes;
+        if (minBytesDelta > 0 && delta >= minBytesDelta) {
+            report(minIntervalNanos > 0 ? System.nanoTime() : 0);
+        } else if (minIntervalNanos > 0) {
+            if (--callsUntilClockCheck > 0 && bytes < clockCheckBytes) {
+                return;
+            }
+            callsUntilClockCheck = CLOCK_CHECK_CALLS;
+            clockCheckBytes = bytes + CLOCK_CHECK_BYTES;
+            long now = System.nanoTime();
+            if (now - reportedTimeNanos >= minIntervalNanos) {
+                report(now);
+            }
+        } else if (minBytesDelta <= 0) {
+            report(0);
+        }
+    }
+
+    /**
+     * Reports the current number of bytes regardless of sampling. Call when the transfer is done
+     * so the final value is always shown.
+     */
+    public void flush() {
+        report(System.nanoTime());
+    }
+
+    /**
+     * Transfers bytes from a file channel with {@link FileChannel#transferTo}, reporting after
+     * every chunk of {@link #getTransferChunkSize()} bytes. The final count is always reported.
+     *
+     * @return The number of bytes transferred.
+     */
+    public long transferTo(FileChannel source, long position, long count,
+                           WritableByteChannel target) throws IOException {
+        long transferred = 0;
+        while (transferred < count) {
+            long chunk = Math.min(transferChunkSize, count - transferred);
+            long written = source.transferTo(position + transferred, chunk, target);
+            if (written <= 0) {
+                break;
+            }
+            transferred += written;
+            onBytes(written);
+        }
+        flush();
+        return transferred;
+    }
+
+    /**
+     * Transfers bytes into a file channel with {@link FileChannel#transferFrom}, reporting after
+     * every chunk of {@link #getTransferChunkSize()} bytes. The final count is always reported.
+     *
+     * @return The number of bytes transferred.
+     */
+    public long transferFrom(ReadableByteChannel source, FileChannel target, long position,
+                             long count) throws IOException {
+        long transferred = 0;
+        while (transferred < count) {
+            long chunk = Math.min(transferChunkSize, count - transferred);
+            long read = target.transferFrom(source, position + transferred, chunk);
+            if (read <= 0) {
+                break;
+            }
+            transferred += read;
+            onBytes(read);
+        }
+        flush();
+        return transferred;
+    }
+
+    private void report(long timeNanos) {
+        reportedBytes = bytes;
+        reportedTimeNanos = timeNanos;
+        onReport(bytes);
+    }
+
+    /**
+     * Called when a sample is reported. Posts the matching progress to the button.
+     *
+     * @param transferredBytes The number of bytes transferred so far.
+     */
+    protected void onReport(long transferredBytes) {
+        float maxProgress = progressButton.getMaxProgress();
+        float fraction = (float) Math.min(transferredBytes, totalBytes) / totalBytes;
+        progressButton.postProgress(maxProgress * fraction);
+    }
+
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package be.appfoundry.progressbutton.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rendering counters of one or more progress buttons. A button records into its metrics once
+ * they are set with {@code ProgressButton#setMetrics}; every record is forwarded to the parent
+ * metrics as well, so {@link #getAggregate()} sums up all buttons.
+ * <p>
+ * Apart from {@link #recordProgressReceived()}, which can be called from any thread, metrics are
+ * recorded and read on the main thread. The {@link Listener} is called on the main thread once
+ * per reporting window. Windows are measured with {@link System#nanoTime()}, whatever clock the
+ * recorded draw and frame times come from.
+ */
+public class RenderMetrics {
+
+    /**
+     * Upper bounds of the draw duration histogram buckets in nanoseconds. The last bucket counts
+     * all longer draws.
+     */
+    private static final long[] DRAW_TIME_BUCKET_BOUNDS_NANOS = {
+            250000L, 500000L, 1000000L, 2000000L, 4000000L, 8000000L, 16000000L
+    };
+    private static final long DEFAULT_WINDOW_NANOS = 1000000000L;
+    private static final float NANOS_PER_SECOND = 1000000000f;
+    /**
+     * A frame arriving this much later than expected counts as late.
+     */
+    private static final float LATE_FRAME_FACTOR = 1.5f;
+
+    private static RenderMetrics aggregate;
+
+    private final RenderMetrics parent;
+
+    private final long[] drawTimeHistogram = new long[DRAW_TIME_BUCKET_BOUNDS_NANOS.length + 1];
+    private long drawCount;
+    private long totalDrawTimeNanos;
+    private long maxDrawTimeNanos;
+    private long invalidations;
+    private long animationTicks;
+    private long lateFrames;
+    private long skippedFrames;
+    private final AtomicLong progressUpdatesReceived = new AtomicLong();
+    private long progressUpdatesRendered;
+
+    private Listener listener;
+    private long windowNanos = DEFAULT_WINDOW_NANOS;
+    private long windowStartNanos;
+    private long windowInvalidations;
+    private float invalidationsPerSecond;
+
+    /**
+     * Creates metrics that forward to the aggregate of all buttons.
+     */
+    public RenderMetrics() {
+        this(getAggregate());
+    }
+
+    /**
+     * Creates metrics that forward to the given parent.
+     *
+     * @param parent The parent metrics, null for none.
+     */
+    public RenderMetrics(RenderMetrics parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Returns the metrics summing up all buttons.
+     */
+    public static synchronized RenderMetrics getAggregate() {
+        if (aggregate == null) {
+            aggregate = new RenderMetrics(null);
+        }
+        return aggregate;
+    }
+
+    /**
+     * Records a call to onDraw.
+     *
+     * @param startNanos The time the draw started.
+     * @param endNanos   The time the draw ended.
+     */
+    public void recordDraw(long startNanos, long endNanos) {
+        long duration = endNanos - startNanos;
+        drawCount++;
+        totalDrawTimeNanos += duration;
+        maxDrawTimeNanos = Math.max(maxDrawTimeNanos, duration);
+        drawTimeHistogram[bucketOf(duration)]++;
+        if (parent != null) {
+            parent.recordDraw(startNanos, endNanos);
+        }
+        maybeReport();
+    }
+
+    /**
+     * Records an invalidation of the view.
+     */
+    public void recordInvalidate() {
+        invalidations++;
+        windowInvalidations++;
+        if (parent != null) {
+            parent.recordInvalidate();
+        }
+    }
+
+    /**
+     * Records a tick of the indeterminate animation.
+     *
+     * @param frameTimeNanos          The time of the frame.
+     * @param frameIntervalNanos      The time since the previous tick, 0 for the first tick.
+     * @param expectedIntervalNanos   The expected time between two ticks.
+     */
+    public void recordAnimationTick(
+            long frameTimeNanos,
+            long frameIntervalNanos,
+            long expectedIntervalNanos) {
+        animationTicks++;
+        if (expectedIntervalNanos > 0
+                && frameIntervalNanos > expectedIntervalNanos * LATE_FRAME_FACTOR) {
+            lateFrames++;
+            skippedFrames += Math.round((double) frameIntervalNanos / expectedIntervalNanos) - 1;
+        }
+        if (parent != null) {
+            parent.recordAnimationTick(frameTimeNanos, frameIntervalNanos, expectedIntervalNanos);
+        }
+        maybeReport();
+    }
+
+    /**
+     * Records a progress update handed to the button. Can be called from any thread.
+     */
+    public void recordProgressReceived() {
+        progressUpdatesReceived.incrementAndGet();
+        if (parent != null) {
+            parent.recordProgressReceived();
+        }
+    }
+
+    /**
+     * Records a draw showing a new progress value. Frames of the indeterminate animation and
+     * intermediate values of an animated progress change are not new progress values.
+     */
+    public void recordProgressRendered() {
+        progressUpdatesRendered++;
+        if (parent != null) {
+            parent.recordProgressRendered();
+        }
+    }
+
+    /**
+     * Returns the number of draws.
+     */
+    public long getDrawCount() {
+        return drawCount;
+    }
+
+    /**
+     * Returns the total time spent drawing in nanoseconds.
+     */
+    public long getTotalDrawTimeNanos() {
+        return totalDrawTimeNanos;
+    }
+
+    /**
+     * Returns the longest draw in nanoseconds.
+     */
+    public long getMaxDrawTimeNanos() {
+        return maxDrawTimeNanos;
+    }
+
+    /**
+     * Returns the number of histogram buckets.
+     */
+    public int getDrawTimeBucketCount() {
+        return drawTimeHistogram.length;
+    }
+
+    /**
+     * Returns the upper bound of a histogram bucket in nanoseconds, {@link Long#MAX_VALUE} for
+     * the last bucket.
+     */
+    public long getDrawTimeBucketBound(int bucket) {
+        return bucket < DRAW_TIME_BUCKET_BOUNDS_NANOS.length
+                ? DRAW_TIME_BUCKET_BOUNDS_NANOS[bucket]
+                : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the number of draws in a histogram bucket.
+     */
+    public long getDrawTimeBucket(int bucket) {
+        return drawTimeHistogram[bucket];
+    }
+
+    /**
+     * Returns the number of invalidations.
+     */
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Returns the invalidations per second over the last completed reporting window.
+     */
+    public float getInvalidationsPerSecond() {
+        return invalidationsPerSecond;
+    }
+
+    /**
+     * Returns the number of animation ticks.
+     */
+    public long getAnimationTicks() {
+        return animationTicks;
+    }
+
+    /**
+     * Returns the number of animation ticks that arrived late.
+     */
+    public long getLateFrames() {
+        return lateFrames;
+    }
+
+    /**
+     * Returns the number of animation frames skipped by late ticks.
+     */
+    public long getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    /**
+     * Returns the number of progress updates handed to the button.
+     */
+    public long getProgressUpdatesReceived() {
+        return progressUpdatesReceived.get();
+    }
+
+    /**
+     * Returns the number of draws that showed a new progress value, see
+     * {@link #recordProgressRendered()}.
+     */
+    public long getProgressUpdatesRendered() {
+        return progressUpdatesRendered;
+    }
+
+    /**
+     * Sets the listener called once per reporting window, null to remove it.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the length of the reporting window in milliseconds. Defaults to 1000.
+     */
+    public void setReportingWindowMillis(long windowMillis) {
+        this.windowNanos = windowMillis * 1000000L;
+    }
+
+    /**
+     * Resets all counters.
+     */
+    public void reset() {
+        for (int i = 0; i < drawTimeHistogram.length; i++) {
+            drawTimeHistogram[i] = 0;
+        }
+        drawCount = 0;
+        totalDrawTimeNanos = 0;
+        maxDrawTimeNanos = 0;
+        invalidations = 0;
+        animationTicks = 0;
+        lateFrames = 0;
+        skippedFrames = 0;
+        progressUpdatesReceived.set(0);
+        progressUpdatesRendered = 0;
+        windowStartNanos = 0;
+        windowInvalidations = 0;
+        invalidationsPerSecond = 0;
+    }
+
+    /**
+     * Completes the current reporting window now, even if it has not passed yet, and reports it
+     * to the listener. The next record starts a new window, so the time the button was idle or
+     * detached does not dilute it. Called when a button stops animating or is detached; the
+     * parent metrics keep their window, other buttons may still record into it.
+     */
+    public void flush() {
+        if (windowStartNanos == 0) {
+            return;
+        }
+        report(nanoTime() - windowStartNanos);
+        windowStartNanos = 0;
+    }
+
+    /**
+     * Completes the reporting window once it has passed. The window is timed with a clock of its
+     * own: frame times come from the choreographer or, before Jelly Bean, from the uptime clock,
+     * and cannot be compared with the draw times.
+     */
+    private void maybeReport() {
+        long nowNanos = nanoTime();
+        if (windowStartNanos == 0) {
+            windowStartNanos = nowNanos;
+            return;
+        }
+        long elapsed = nowNanos - windowStartNanos;
+        if (elapsed < windowNanos) {
+            return;
+        }
+        report(elapsed);
+        windowStartNanos = nowNanos;
+    }
+
+    private void report(long elapsedNanos) {
+        if (elapsedNanos > 0) {
+            invalidationsPerSecond = windowInvalidations * NANOS_PER_SECOND / elapsedNanos;
+        }
+        windowInvalidations = 0;
+        if (listener != null) {
+            listener.onMetricsReport(this);
+        }
+    }
+
+    /**
+     * Returns the time of the reporting clock.
+     */
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    private static int bucketOf(long durationNanos) {
+        for (int i = 0; i < DRAW_TIME_BUCKET_BOUNDS_NANOS.length; i++) {
+            if (durationNanos < DRAW_TIME_BUCKET_BOUNDS_NANOS[i]) {
+                return i;
+            }
+        }
+        return DRAW_TIME_BUCKET_BOUNDS_NANOS.length;
+    }
+
+    /**
+     * Receives the metrics once per reporting window, for example to ship them to telemetry.
+     */
+    public interface Listener {
+
+        /**
+         * Called on the main thread when a reporting window has passed.
+         *
+         * @param metrics The metrics, valid for the duration of the call.
+         */
+        void onMetricsReport(RenderMetrics metrics);
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package be.appfoundry.progressbutton.util;
+
+import be.appfoundry.progressbutton.core.FrameTicker;
+
+/**
+ * Process wide animation ticker. All registered callbacks are advanced in a single pass per
+ * frame, so only one frame callback is scheduled no matter how many animations are running.
+ * Must be used from the main thread.
+ */
+public final class AnimationTicker extends FrameTicker implements FrameScheduler.Callback {
+
+    private static AnimationTicker instance;
+
+    private final FrameScheduler frameScheduler = FrameScheduler.create(this);
+
+    private AnimationTicker() {
+    }
+
+    /**
+     * Returns the shared ticker.
+     */
+    public static AnimationTicker getInstance() {
+        if (instance == null) {
+            instance = new AnimationTicker();
+        }
+        return instance;
+    }
+
+    @Override
+    public void register(Callback callback) {
+        super.register(callback);
+        frameScheduler.scheduleFrame();
+    }
+
+    @Override
+    public boolean unregister(Callback callback) {
+        boolean empty = super.unregister(callback);
+        if (empty) {
+            frameScheduler.cancelFrame();
+        }
+        return empty;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (dispatch(frameTimeNanos)) {
+            frameScheduler.scheduleFrame();
+        }
+    }
+
+}
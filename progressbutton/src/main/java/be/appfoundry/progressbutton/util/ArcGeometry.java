@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package be.appfoundry.progressbutton.util;
+
+import android.graphics.RectF;
+
+/**
+ * Geometry helpers for the arcs drawn by the ProgressButton. Angles are in degrees and follow
+ * the {@link android.graphics.Canvas#drawArc} convention: 0 is at 3 o'clock and positive angles
+ * go clockwise.
+ */
+public final class ArcGeometry {
+
+    private static final int FULL_CIRCLE = 360;
+    private static final int QUARTER_CIRCLE = 90;
+
+    private ArcGeometry() {
+    }
+
+    /**
+     * Returns the smallest angle that moves a point on a circle with the given radius by the
+     * given distance.
+     *
+     * @param radius   The radius of the circle in pixels.
+     * @param distance The distance along the circle in pixels.
+     */
+    public static float degreesForDistance(float radius, float distance) {
+        if (radius <= 0) {
+            return 0;
+        }
+        return (float) Math.toDegrees(distance / radius);
+    }
+
+    /**
+     * Extends {@code out} with the bounds of a pie wedge. The wedge includes the center of the
+     * circle. {@code out} is not reset first, so several wedges can be combined; reset it to the
+     * center point to start with a single wedge.
+     *
+     * @param centerX    The horizontal center of the circle.
+     * @param centerY    The vertical center of the circle.
+     * @param radius     The radius of the circle.
+     * @param startAngle The start angle of the wedge.
+     * @param sweepAngle The sweep angle of the wedge, may be negative.
+     * @param out        The rectangle to extend.
+     */
+    public static void unionWedge(
+            float centerX,
+            float centerY,
+            float radius,
+            float startAngle,
+            float sweepAngle,
+            RectF out) {
+        float start = startAngle;
+        float sweep = sweepAngle;
+        if (sweep < 0) {
+            start += sweep;
+            sweep = -sweep;
+        }
+        unionPoint(centerX, centerY, out);
+        if (sweep >= FULL_CIRCLE) {
+            unionPoint(centerX - radius, centerY - radius, out);
+            unionPoint(centerX + radius, centerY + radius, out);
+            return;
+        }
+        start = start % FULL_CIRCLE;
+        if (start < 0) {
+            start += FULL_CIRCLE;
+        }
+        float end = start + sweep;
+        unionAngle(centerX, centerY, radius, start, out);
+        unionAngle(centerX, centerY, radius, end, out);
+        // the extremes of the circle lie on multiples of 90 degrees
+        for (int axis = QUARTER_CIRCLE * ((int) (start / QUARTER_CIRCLE) + 1);
+             axis < end;
+             axis += QUARTER_CIRCLE) {
+            unionAngle(centerX, centerY, radius, axis, out);
+        }
+    }
+
+    /**
+     * Resets {@code out} to an empty rectangle at the given point.
+     */
+    public static void resetToPoint(float x, float y, RectF out) {
+        out.left = x;
+        out.right = x;
+        out.top = y;
+        out.bottom = y;
+    }
+
+    private static void unionAngle(
+            float centerX,
+            float centerY,
+            float radius,
+            float angle,
+            RectF out) {
+        double radians = Math.toRadians(angle);
+        unionPoint(
+                centerX + (float) (radius * Math.cos(radians)),
+                centerY + (float) (radius * Math.sin(radians)),
+                out);
+    }
+
+    private static void unionPoint(float x, float y, RectF out) {
+        out.left = Math.min(out.left, x);
+        out.right = Math.max(out.right, x);
+        out.top = Math.min(out.top, y);
+        out.bottom = Math.max(out.bottom, y);
+    }
+
+}
@@ -2,7 +2,6 @@ package be.appfoundry.progressbutton.util;
 
 import android.annotation.TargetApi;
 import android.graphics.Outline;
-import android.graphics.Rect;
 import android.os.Build;
 import android.view.View;
 import android.view.ViewOutlineProvider;
@@ -19,10 +18,15 @@ public class CircularOutline extends ViewOutlineProvider {
         this.height = height;
     }
 
+    /** Resizes the outline, so the provider can be reused when the view changes size */
+    public void setSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
     @Override
     public void getOutline(View view, Outline outline) {
-        Rect r = new Rect(0, 0, width, height);
-        outline.setOval(r);
+        outline.setOval(0, 0, width, height);
     }
 
 }
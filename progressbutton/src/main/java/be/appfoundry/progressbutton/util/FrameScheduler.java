@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package be.appfoundry.progressbutton.util;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+/**
+ * Schedules a callback on the next display frame. Uses the {@link Choreographer} when available
+ * and falls back to a {@link Handler} aligned on a 60 fps frame interval on older API levels.
+ * Must be used from the main thread.
+ */
+public abstract class FrameScheduler {
+
+    /**
+     * The frame interval used by the fallback scheduler, in milliseconds.
+     */
+    public static final long FALLBACK_FRAME_INTERVAL_MS = 16;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    final Callback callback;
+
+    FrameScheduler(Callback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * Creates the best available scheduler for this API level.
+     */
+    public static FrameScheduler create(Callback callback) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            return new ChoreographerFrameScheduler(callback);
+        }
+        return new HandlerFrameScheduler(callback);
+    }
+
+    /**
+     * Requests a callback on the next frame. Calling this more than once before the frame is
+     * rendered results in a single callback.
+     */
+    public abstract void scheduleFrame();
+
+    /**
+     * Cancels a pending frame callback, if any.
+     */
+    public abstract void cancelFrame();
+
+    /**
+     * Callback invoked once for every scheduled frame.
+     */
+    public interface Callback {
+
+        /**
+         * Called when a frame is being rendered.
+         *
+         * @param frameTimeNanos The time the frame started rendering, in nanoseconds.
+         */
+        void doFrame(long frameTimeNanos);
+    }
+
+    /**
+     * Frame scheduler backed by the {@link Choreographer}.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    static class ChoreographerFrameScheduler extends FrameScheduler
+            implements Choreographer.FrameCallback {
+
+        private final Choreographer choreographer = Choreographer.getInstance();
+        private boolean scheduled;
+
+        ChoreographerFrameScheduler(Callback callback) {
+            super(callback);
+        }
+
+        @Override
+        public void scheduleFrame() {
+            if (!scheduled) {
+                scheduled = true;
+                choreographer.postFrameCallback(this);
+            }
+        }
+
+        @Override
+        public void cancelFrame() {
+            if (scheduled) {
+                scheduled = false;
+                choreographer.removeFrameCallback(this);
+            }
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            scheduled = false;
+            callback.doFrame(frameTimeNanos);
+        }
+    }
+
+    /**
+     * Frame scheduler for API levels without a {@link Choreographer}. Frames are aligned on
+     * {@link #FALLBACK_FRAME_INTERVAL_MS} so the message queue is never flooded.
+     */
+    static class HandlerFrameScheduler extends FrameScheduler {
+
+        private static final int MSG_FRAME = 0;
+
+        private final Handler handler;
+
+        HandlerFrameScheduler(Callback callback) {
+            super(callback);
+            handler = new FrameHandler(this);
+        }
+
+        @Override
+        public void scheduleFrame() {
+            if (!handler.hasMessages(MSG_FRAME)) {
+                long now = SystemClock.uptimeMillis();
+                long nextFrame = now - now % FALLBACK_FRAME_INTERVAL_MS
+                        + FALLBACK_FRAME_INTERVAL_MS;
+                handler.sendEmptyMessageAtTime(MSG_FRAME, nextFrame);
+            }
+        }
+
+        @Override
+        public void cancelFrame() {
+            handler.removeMessages(MSG_FRAME);
+        }
+
+        /**
+         * Handler delivering the fallback frames.
+         */
+        static class FrameHandler extends Handler {
+            private final HandlerFrameScheduler scheduler;
+
+            FrameHandler(HandlerFrameScheduler scheduler) {
+                super(Looper.getMainLooper());
+                this.scheduler = scheduler;
+            }
+
+            @Override
+            public void handleMessage(Message msg) {
+                scheduler.callback.doFrame(SystemClock.uptimeMillis() * NANOS_PER_MILLI);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package be.appfoundry.progressbutton.util;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.support.v4.content.ContextCompat;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process wide least recently used cache of icons rasterized at the exact size they are drawn,
+ * keyed by drawable resource, pixel size, tint and theme colors. Buttons showing the same icon
+ * at the same size share one bitmap, and drawing it is a plain bitmap copy instead of scaling or
+ * rendering the drawable again. Drawables can refer to theme attributes, so untinted icons are
+ * also keyed by the resolved {@link ThemeColors} of the theme they are loaded with; themes with
+ * the same colors share the raster. A tint replaces every color of the icon, so tinted icons are
+ * shared across themes.
+ * <p>
+ * The total size of the cached bitmaps is bounded, see {@link #setMaxBytes(long)}. The cache
+ * shrinks or empties itself when the system asks the application to trim its memory, and empties
+ * itself when the density or the night mode changes. Evicted bitmaps are not recycled, they may
+ * still be drawn by a button that looked them up before. Must be used from the main thread.
+ */
+public final class IconCache implements ComponentCallbacks2 {
+
+    /**
+     * The default memory cap, in bytes.
+     */
+    public static final long DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static IconCache instance;
+
+    private final LinkedHashMap<Key, Bitmap> bitmaps =
+            new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+    /**
+     * Reused for lookups, so a cache hit does not allocate.
+     */
+    private final Key lookupKey = new Key();
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    private long bytes;
+    /**
+     * The density the cached icons were rasterized for.
+     */
+    private int densityDpi;
+    /**
+     * The night mode bits of the configuration the cached icons were rasterized for.
+     */
+    private int nightMode;
+
+    private IconCache(Resources resources) {
+        densityDpi = resources.getDisplayMetrics().densityDpi;
+        nightMode = resources.getConfiguration().uiMode & Configuration.UI_MODE_NIGHT_MASK;
+    }
+
+    /**
+     * Returns the shared cache, registering it for memory trim callbacks on first use.
+     */
+    public static IconCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new IconCache(context.getResources());
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+                context.getApplicationContext().registerComponentCallbacks(instance);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the icon rasterized at the given size, from the cache if possible.
+     *
+     * @param context The context to load the drawable with. The colors of its theme are part of
+     *                the key of untinted icons.
+     * @param resId   The drawable resource of the icon.
+     * @param size    The width and height of the raster in pixels.
+     * @param tint    The color the icon is tinted with, 0 for none.
+     * @return The raster, or null if the size is not positive.
+     */
+    public Bitmap get(Context context, int resId, int size, int tint) {
+        if (size <= 0) {
+            return null;
+        }
+        ThemeColors themeColors = tint == 0 ? ThemeColors.get(context.getTheme()) : null;
+        Bitmap bitmap = bitmaps.get(lookupKey.set(resId, size, tint, themeColors));
+        if (bitmap == null) {
+            bitmap = rasterize(context, resId, size, tint);
+            if (bitmap != null) {
+                put(new Key().set(resId, size, tint, themeColors), bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * Returns the memory cap in bytes.
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Sets the memory cap in bytes, evicting the least recently used icons if the cache is
+     * larger. Defaults to {@link #DEFAULT_MAX_BYTES}.
+     */
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trimToSize(maxBytes);
+    }
+
+    /**
+     * Returns the size of the cached bitmaps in bytes.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the number of cached icons.
+     */
+    public int getCount() {
+        return bitmaps.size();
+    }
+
+    /**
+     * Removes all icons.
+     */
+    public void clear() {
+        bitmaps.clear();
+        bytes = 0;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE) {
+            clear();
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+            trimToSize(maxBytes / 2);
+        } else if (level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            clear();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        // only the density and the night mode change the icon resources or the theme colors;
+        // the configuration density is not available before Jelly Bean MR1, when it is fixed
+        int newDensityDpi = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1
+                ? newConfig.densityDpi
+                : densityDpi;
+        int newNightMode = newConfig.uiMode & Configuration.UI_MODE_NIGHT_MASK;
+        if (newDensityDpi != densityDpi || newNightMode != nightMode) {
+            densityDpi = newDensityDpi;
+            nightMode = newNightMode;
+            clear();
+        }
+    }
+
+    private void put(Key key, Bitmap bitmap) {
+        long size = sizeOf(bitmap);
+        if (size > maxBytes) {
+            return;
+        }
+        Bitmap previous = bitmaps.put(key, bitmap);
+        if (previous != null) {
+            bytes -= sizeOf(previous);
+        }
+        bytes += size;
+        trimToSize(maxBytes);
+    }
+
+    private void trimToSize(long targetBytes) {
+        Iterator<Map.Entry<Key, Bitmap>> iterator = bitmaps.entrySet().iterator();
+        while (bytes > targetBytes && iterator.hasNext()) {
+            bytes -= sizeOf(iterator.next().getValue());
+            iterator.remove();
+        }
+    }
+
+    private static long sizeOf(Bitmap bitmap) {
+        return (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    private static Bitmap rasterize(Context context, int resId, int size, int tint) {
+        Drawable drawable = ContextCompat.getDrawable(context, resId);
+        if (drawable == null) {
+            return null;
+        }
+        drawable = drawable.mutate();
+        drawable.setBounds(0, 0, size, size);
+        if (tint != 0) {
+            drawable.setColorFilter(new PorterDuffColorFilter(tint, PorterDuff.Mode.SRC_IN));
+        }
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        drawable.draw(new Canvas(bitmap));
+        return bitmap;
+    }
+
+    /**
+     * Identifies a raster: the drawable resource, the size, the tint and, for untinted icons, the
+     * colors of the theme it was loaded with. Keys hold resolved values only, no theme.
+     */
+    static final class Key {
+        private static final int HASH_MULTIPLIER = 31;
+
+        private int resId;
+        private int size;
+        private int tint;
+        private int colorPrimary;
+        private int colorPrimaryDark;
+        private int colorAccent;
+
+        Key set(int resId, int size, int tint, ThemeColors themeColors) {
+            this.resId = resId;
+            this.size = size;
+            this.tint = tint;
+            colorPrimary = themeColors != null ? themeColors.getColorPrimary() : 0;
+            colorPrimaryDark = themeColors != null ? themeColors.getColorPrimaryDark() : 0;
+            colorAccent = themeColors != null ? themeColors.getColorAccent() : 0;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return resId == key.resId && size == key.size && tint == key.tint
+                    && colorPrimary == key.colorPrimary
+                    && colorPrimaryDark == key.colorPrimaryDark
+                    && colorAccent == key.colorAccent;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = resId;
+            result = HASH_MULTIPLIER * result + size;
+            result = HASH_MULTIPLIER * result + tint;
+            result = HASH_MULTIPLIER * result + colorPrimary;
+            result = HASH_MULTIPLIER * result + colorPrimaryDark;
+            result = HASH_MULTIPLIER * result + colorAccent;
+            return result;
+        }
+    }
+
+}
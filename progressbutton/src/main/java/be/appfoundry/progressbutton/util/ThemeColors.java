@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package be.appfoundry.progressbutton.util;
+
+import android.annotation.TargetApi;
+import android.content.res.Resources;
+import android.os.Build;
+import android.util.TypedValue;
+
+import java.util.WeakHashMap;
+
+/**
+ * The primary, primary dark and accent colors of a theme, the default colors of a button. They
+ * are resolved once per {@link Resources.Theme} and shared by all buttons inflated with it, so
+ * inflating many buttons does not resolve the same attributes over and over. Themes are held
+ * weakly. Thread safe, so buttons can be inflated on a background thread.
+ * <p>
+ * A theme changed with {@link Resources.Theme#applyStyle} after buttons were created keeps the
+ * colors resolved before; call {@link #clear()} after restyling a theme in place.
+ */
+public final class ThemeColors {
+
+    private static final int DEFAULT_COLOR_PRIMARY = 0xFFFFFFFF;
+    private static final int DEFAULT_COLOR_PRIMARY_DARK = 0x33000000;
+    private static final int DEFAULT_COLOR_ACCENT = 0xFF000000;
+
+    private static final WeakHashMap<Resources.Theme, ThemeColors> CACHE = new WeakHashMap<>();
+    private static final ThemeColors DEFAULTS = new ThemeColors();
+    /**
+     * Reused to resolve the attributes. Guarded by the class, like {@link #CACHE}.
+     */
+    private static TypedValue value;
+
+    private int colorPrimary = DEFAULT_COLOR_PRIMARY;
+    private int colorPrimaryDark = DEFAULT_COLOR_PRIMARY_DARK;
+    private int colorAccent = DEFAULT_COLOR_ACCENT;
+
+    private ThemeColors() {
+    }
+
+    /**
+     * Returns the colors of a theme, resolving them on first use.
+     */
+    public static synchronized ThemeColors get(Resources.Theme theme) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            return DEFAULTS;
+        }
+        ThemeColors colors = CACHE.get(theme);
+        if (colors == null) {
+            colors = new ThemeColors();
+            if (value == null) {
+                value = new TypedValue();
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                colors.resolveLollipop(theme, value);
+            } else {
+                colors.resolveJellyBean(theme, value);
+            }
+            CACHE.put(theme, colors);
+        }
+        return colors;
+    }
+
+    /**
+     * Forgets the colors of all themes.
+     */
+    public static synchronized void clear() {
+        CACHE.clear();
+    }
+
+    /**
+     * Returns the primary color, the default fill color.
+     */
+    public int getColorPrimary() {
+        return colorPrimary;
+    }
+
+    /**
+     * Returns the primary dark color, the default stroke color.
+     */
+    public int getColorPrimaryDark() {
+        return colorPrimaryDark;
+    }
+
+    /**
+     * Returns the accent color, the default progress color.
+     */
+    public int getColorAccent() {
+        return colorAccent;
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void resolveLollipop(Resources.Theme theme, TypedValue value) {
+        colorPrimary = resolve(theme, android.R.attr.colorPrimary, value, colorPrimary);
+        colorPrimaryDark = resolve(
+                theme,
+                android.R.attr.colorPrimaryDark,
+                value,
+                colorPrimaryDark);
+        colorAccent = resolve(theme, android.R.attr.colorAccent, value, colorAccent);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void resolveJellyBean(Resources.Theme theme, TypedValue value) {
+        colorPrimary = resolve(
+                theme,
+                android.support.v7.appcompat.R.attr.colorPrimary,
+                value,
+                colorPrimary);
+        colorPrimaryDark = resolve(
+                theme,
+                android.support.v7.appcompat.R.attr.colorPrimaryDark,
+                value,
+                colorPrimaryDark);
+        colorAccent = resolve(
+                theme,
+                android.support.v7.appcompat.R.attr.colorAccent,
+                value,
+                colorAccent);
+    }
+
+    private static int resolve(Resources.Theme theme, int attr, TypedValue value, int fallback) {
+        return theme.resolveAttribute(attr, value, true) ? value.data : fallback;
+    }
+
+}
@@ -0,0 +1,77 @@
+package be.appfoundry.progressbutton;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the bytes allocated by the current thread, using the HotSpot thread allocation
+ * counters.
+ */
+public final class AllocationCounter {
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final int ROUNDS = 3;
+
+    private final long threadId = Thread.currentThread().getId();
+    private long start;
+
+    public AllocationCounter() {
+        THREAD_MX_BEAN.setThreadAllocatedMemoryEnabled(true);
+        // warm up the counter itself
+        allocatedBytes();
+        allocatedBytes();
+    }
+
+    /**
+     * Starts counting from zero.
+     */
+    public void start() {
+        start = allocatedBytes();
+    }
+
+    /**
+     * Returns the bytes allocated since {@link #start()}.
+     */
+    public long stop() {
+        return allocatedBytes() - start;
+    }
+
+    /**
+     * Runs the frame the given number of times, first to warm up and then while counting, and
+     * returns the bytes allocated during the counted runs. The counted runs are repeated a few
+     * times and the lowest count is returned, so one-off allocations by the JIT compiler or class
+     * loading do not fail a test. A path allocating per frame allocates in every round.
+     */
+    public long measure(Frame frame, int warmUpFrames, int frames) throws Exception {
+        for (int i = 0; i < warmUpFrames; i++) {
+            frame.run(i);
+        }
+        long lowest = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS && lowest > 0; round++) {
+            start();
+            for (int i = 0; i < frames; i++) {
+                frame.run(warmUpFrames + i);
+            }
+            lowest = Math.min(lowest, stop());
+        }
+        return lowest;
+    }
+
+    private long allocatedBytes() {
+        return THREAD_MX_BEAN.getThreadAllocatedBytes(threadId);
+    }
+
+    /**
+     * A simulated frame.
+     */
+    public interface Frame {
+
+        /**
+         * Runs one frame.
+         *
+         * @param index The index of the frame.
+         */
+        void run(int index) throws Exception;
+    }
+}
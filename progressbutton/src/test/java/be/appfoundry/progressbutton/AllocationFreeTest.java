@@ -0,0 +1,89 @@
+package be.appfoundry.progressbutton;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import be.appfoundry.progressbutton.core.AtomicProgress;
+import be.appfoundry.progressbutton.core.FrameTicker;
+import be.appfoundry.progressbutton.io.ProgressTracker;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs the steady state frame paths thousands of times and fails if any of them allocates. The
+ * tests run on the plain JVM, so they only cover paths without framework calls; the arc geometry
+ * needs the framework RectF and is measured on a device by ArcGeometryAllocationBenchmark.
+ */
+public class AllocationFreeTest {
+
+    private static final int WARM_UP_FRAMES = 10000;
+    private static final int FRAMES = 10000;
+    private static final int CALLBACKS = 200;
+    private static final long NANOS_PER_FRAME = 16666667L;
+
+    private AllocationCounter allocationCounter;
+
+    @Before
+    public void setUp() {
+        allocationCounter = new AllocationCounter();
+    }
+
+    @Test
+    public void frameTicker_doesNotAllocatePerFrame() throws Exception {
+        final FrameTicker ticker = new FrameTicker();
+        final CountingCallback[] callbacks = new CountingCallback[CALLBACKS];
+        for (int i = 0; i < CALLBACKS; i++) {
+            callbacks[i] = new CountingCallback();
+            ticker.register(callbacks[i]);
+        }
+        long allocated = allocationCounter.measure(new AllocationCounter.Frame() {
+            @Override
+            public void run(int index) {
+                ticker.dispatch(index * NANOS_PER_FRAME);
+            }
+        }, WARM_UP_FRAMES, FRAMES);
+        assertEquals(0, allocated);
+        assertEquals(WARM_UP_FRAMES + FRAMES, callbacks[0].frames);
+    }
+
+    @Test
+    public void atomicProgress_doesNotAllocate() throws Exception {
+        final AtomicProgress progress = new AtomicProgress();
+        long allocated = allocationCounter.measure(new AllocationCounter.Frame() {
+            @Override
+            public void run(int index) {
+                progress.offer(index);
+                progress.offer(index + 1);
+                progress.take();
+            }
+        }, WARM_UP_FRAMES, FRAMES);
+        assertEquals(0, allocated);
+    }
+
+    @Test
+    public void progressTracker_doesNotAllocate() throws Exception {
+        final ProgressTracker tracker = new ProgressTracker(null, Long.MAX_VALUE) {
+            @Override
+            protected void onReport(long transferredBytes) {
+                // not bound to a button
+            }
+        };
+        long allocated = allocationCounter.measure(new AllocationCounter.Frame() {
+            @Override
+            public void run(int index) {
+                tracker.onBytes(index);
+            }
+        }, WARM_UP_FRAMES, FRAMES);
+        assertEquals(0, allocated);
+    }
+
+    private static class CountingCallback implements FrameTicker.Callback {
+        int frames;
+
+        @Override
+        public boolean onAnimationFrame(long frameTimeNanos) {
+            frames++;
+            return true;
+        }
+    }
+}
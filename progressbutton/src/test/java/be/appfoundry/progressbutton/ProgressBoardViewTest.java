@@ -0,0 +1,210 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package be.appfoundry.progressbutton;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import be.appfoundry.progressbutton.util.AnimationTicker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that board cells are plain array writes and that only the cells in the clip are drawn.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProgressBoardViewTest {
+
+    private static final int WIDTH = 400;
+    private static final int CELL_SIZE = 40;
+    private static final int CELL_COUNT = 100;
+    private static final long NANOS_PER_FRAME = 16000000L;
+    private static final float DELTA = 0.0001f;
+
+    private RecordingBoardView board;
+    private int frame;
+
+    @Before
+    public void setUp() {
+        board = new RecordingBoardView(RuntimeEnvironment.application);
+        board.setDrawMode(ProgressDrawable.DRAW_MODE_PIE);
+        board.setColumnCount(WIDTH / CELL_SIZE);
+        board.setCellCount(CELL_COUNT);
+        board.measure(
+                View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+    }
+
+    @Test
+    public void setCellProgress_marksOnlyThatCellDirty() {
+        board.setCellProgress(3, 50);
+
+        assertEquals(50, board.getCellProgress(3), 0);
+        assertTrue(board.isCellDirty(3));
+        assertFalse(board.isCellDirty(2));
+
+        nextFrame();
+        assertFalse(board.isCellDirty(3));
+    }
+
+    @Test
+    public void invalidate_onlyDirtySpanOfEveryRow() {
+        board.setCellProgress(0, 10);
+        board.setCellProgress(CELL_COUNT - 1, 10);
+        board.invalidated.clear();
+        nextFrame();
+
+        assertEquals(2, board.invalidated.size());
+        assertEquals(new Rect(0, 0, CELL_SIZE, CELL_SIZE), board.invalidated.get(0));
+        assertEquals(new Rect(WIDTH - CELL_SIZE, WIDTH - CELL_SIZE, WIDTH, WIDTH),
+                board.invalidated.get(1));
+    }
+
+    @Test
+    public void animation_resumesWhenShownAgain() {
+        board.setCellIndeterminate(0, true);
+        nextFrame();
+        nextFrame();
+        float progress = board.getAnimationProgress();
+        assertTrue(progress > 0);
+
+        board.setVisibility(View.GONE);
+        nextFrame();
+        nextFrame();
+        assertEquals(progress, board.getAnimationProgress(), DELTA);
+
+        board.setVisibility(View.VISIBLE);
+        nextFrame();
+        nextFrame();
+        assertTrue(board.getAnimationProgress() > progress);
+    }
+
+    @Test
+    public void animation_resumesWhenWindowShownAgain() {
+        board.setCellIndeterminate(0, true);
+        nextFrame();
+        nextFrame();
+        board.onWindowVisibilityChanged(View.INVISIBLE);
+        float progress = board.getAnimationProgress();
+        nextFrame();
+        nextFrame();
+        assertEquals(progress, board.getAnimationProgress(), DELTA);
+
+        board.onWindowVisibilityChanged(View.VISIBLE);
+        nextFrame();
+        nextFrame();
+        assertTrue(board.getAnimationProgress() > progress);
+    }
+
+    @Test
+    public void setCellIndeterminate_acrossWords() {
+        board.setCellIndeterminate(70, true);
+
+        assertTrue(board.isCellIndeterminate(70));
+        assertFalse(board.isCellIndeterminate(6));
+
+        board.setCellCount(CELL_COUNT / 2);
+        board.setCellCount(CELL_COUNT);
+        assertFalse(board.isCellIndeterminate(70));
+    }
+
+    @Test
+    public void measure_fitsAllRows() {
+        assertEquals(WIDTH, board.getMeasuredWidth());
+        assertEquals(CELL_COUNT / (WIDTH / CELL_SIZE) * CELL_SIZE, board.getMeasuredHeight());
+    }
+
+    @Test
+    public void draw_onlyCellsInClip() {
+        RecordingCanvas canvas = new RecordingCanvas();
+        board.draw(canvas);
+        // stroke, progress and inner disc per cell
+        assertEquals(CELL_COUNT * 3, canvas.getDrawCalls());
+
+        canvas.reset();
+        canvas.setClipBounds(CELL_SIZE, 0, CELL_SIZE * 2, CELL_SIZE);
+        board.draw(canvas);
+        assertEquals(3, canvas.getDrawCalls());
+    }
+
+    @Test
+    public void draw_onlyRowsAndColumnsInClip() {
+        RecordingCanvas canvas = new RecordingCanvas();
+        // the inside of columns 2 and 3 of rows 3 and 4
+        canvas.setClipBounds(CELL_SIZE * 2 + 1, CELL_SIZE * 3 + 1, CELL_SIZE * 4, CELL_SIZE * 5);
+        board.draw(canvas);
+        assertEquals(4 * 3, canvas.getDrawCalls());
+
+        canvas.reset();
+        canvas.setClipBounds(0, WIDTH, WIDTH, WIDTH + CELL_SIZE);
+        board.draw(canvas);
+        assertEquals(0, canvas.getDrawCalls());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setDrawMode_rejectsUnknownMode() {
+        board.setDrawMode(-1);
+    }
+
+    @Test
+    public void setCellSpacing_requestsLayout() {
+        board.layout(0, 0, board.getMeasuredWidth(), board.getMeasuredHeight());
+        assertFalse(board.isLayoutRequested());
+
+        board.setCellSpacing(1);
+        assertTrue(board.isLayoutRequested());
+    }
+
+    private void nextFrame() {
+        frame++;
+        AnimationTicker.getInstance().doFrame(frame * NANOS_PER_FRAME);
+    }
+
+    /**
+     * Records the invalidated regions.
+     */
+    static class RecordingBoardView extends ProgressBoardView {
+        private final List<Rect> invalidated = new ArrayList<>();
+
+        RecordingBoardView(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void invalidate(int left, int top, int right, int bottom) {
+            super.invalidate(left, top, right, bottom);
+            invalidated.add(new Rect(left, top, right, bottom));
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package be.appfoundry.progressbutton;
+
+import android.content.Context;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowAccessibilityManager;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Checks that progress announcements to accessibility services are throttled and coalesced.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProgressButtonAccessibilityTest {
+
+    private static final long INTERVAL_MS = 200;
+    private static final float DELTA = 0.0001f;
+
+    private ShadowAccessibilityManager accessibilityManager;
+    private CountingProgressButton button;
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.application;
+        accessibilityManager = shadowOf((AccessibilityManager)
+                context.getSystemService(Context.ACCESSIBILITY_SERVICE));
+        accessibilityManager.setEnabled(true);
+        button = new CountingProgressButton(context);
+        button.setIndeterminate(false);
+        button.setAccessibilityEventInterval(INTERVAL_MS);
+    }
+
+    @Test
+    public void setProgress_announcesOncePerBucket() {
+        button.setProgress(1);
+        button.setProgress(5);
+        button.setProgress(9);
+        assertEquals(1, button.events);
+
+        ShadowLooper.idleMainLooper(INTERVAL_MS);
+        button.setProgress(12);
+        assertEquals(2, button.events);
+    }
+
+    @Test
+    public void setProgress_coalescesWithinInterval() {
+        button.setProgress(15);
+        button.setProgress(25);
+        button.setProgress(35);
+        button.setProgress(45);
+        assertEquals(1, button.events);
+
+        ShadowLooper.idleMainLooper(INTERVAL_MS);
+        assertEquals(2, button.events);
+        assertEquals(45, button.announcedProgress, DELTA);
+    }
+
+    @Test
+    public void setProgress_silentWithoutServices() {
+        accessibilityManager.setEnabled(false);
+        button.setProgress(50);
+        ShadowLooper.idleMainLooper(INTERVAL_MS);
+        assertEquals(0, button.events);
+    }
+
+    /**
+     * Counts the sent accessibility events.
+     */
+    static class CountingProgressButton extends ProgressButton {
+        private int events;
+        private float announcedProgress;
+
+        CountingProgressButton(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void sendAccessibilityEvent(int eventType) {
+            if (eventType == AccessibilityEvent.TYPE_VIEW_SELECTED) {
+                events++;
+                announcedProgress = getProgress();
+            }
+        }
+    }
+
+}
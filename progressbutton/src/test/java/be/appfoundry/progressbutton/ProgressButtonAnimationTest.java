@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package be.appfoundry.progressbutton;
+
+import android.view.View;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import be.appfoundry.progressbutton.metrics.RenderMetrics;
+import be.appfoundry.progressbutton.util.AnimationTicker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the indeterminate animation pauses while the button can not be seen.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProgressButtonAnimationTest {
+
+    private static final long NANOS_PER_FRAME = 16666667L;
+    private static final float DELTA = 0.0001f;
+    private static final float PROGRESS = 50f;
+
+    private ProgressButton button;
+    private int frame;
+
+    @Before
+    public void setUp() {
+        button = new ProgressButton(RuntimeEnvironment.application);
+        button.onAttachedToWindow();
+        button.setIndeterminate(true);
+        button.startAnimating();
+        // the first frame only records the frame time
+        nextFrame();
+    }
+
+    @After
+    public void tearDown() {
+        button.stopAnimating();
+    }
+
+    @Test
+    public void animation_pausesWhileGone() {
+        nextFrame();
+        float progress = button.getProgress();
+        assertTrue(progress > 0);
+
+        button.setVisibility(View.GONE);
+        nextFrame();
+        nextFrame();
+        assertEquals(progress, button.getProgress(), DELTA);
+
+        button.setVisibility(View.VISIBLE);
+        nextFrame();
+        nextFrame();
+        assertTrue(button.getProgress() > progress);
+    }
+
+    @Test
+    public void animation_pausesWhileWindowIsHidden() {
+        button.onWindowVisibilityChanged(View.INVISIBLE);
+        float progress = button.getProgress();
+        nextFrame();
+        nextFrame();
+        assertEquals(progress, button.getProgress(), DELTA);
+
+        button.onWindowVisibilityChanged(View.VISIBLE);
+        nextFrame();
+        nextFrame();
+        assertTrue(button.getProgress() > progress);
+    }
+
+    @Test
+    public void animation_pausesUntilAttached() {
+        ProgressButton detached = new ProgressButton(RuntimeEnvironment.application);
+        detached.setIndeterminate(true);
+        detached.startAnimating();
+        try {
+            float progress = detached.getProgress();
+            nextFrame();
+            nextFrame();
+            assertEquals(progress, detached.getProgress(), DELTA);
+
+            detached.onAttachedToWindow();
+            nextFrame();
+            nextFrame();
+            assertTrue(detached.getProgress() > progress);
+        } finally {
+            detached.stopAnimating();
+        }
+    }
+
+    @Test
+    public void metrics_countOnlyNewProgressValues() {
+        RenderMetrics metrics = new RenderMetrics(null);
+        button.setMetrics(metrics);
+        RecordingCanvas canvas = new RecordingCanvas();
+        for (int i = 0; i < 3; i++) {
+            nextFrame();
+            button.onDraw(canvas);
+        }
+        assertEquals(0, metrics.getProgressUpdatesRendered());
+
+        button.stopAnimating();
+        button.setIndeterminate(false);
+        button.setProgress(PROGRESS);
+        button.onDraw(canvas);
+        button.onDraw(canvas);
+        assertEquals(1, metrics.getProgressUpdatesRendered());
+    }
+
+    private void nextFrame() {
+        frame++;
+        AnimationTicker.getInstance().doFrame(frame * NANOS_PER_FRAME);
+    }
+}
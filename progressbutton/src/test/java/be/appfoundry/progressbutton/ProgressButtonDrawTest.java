@@ -0,0 +1,267 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package be.appfoundry.progressbutton;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import be.appfoundry.progressbutton.util.AnimationTicker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Renders the ProgressButton into a {@link RecordingCanvas} and fails when a configuration
+ * issues more draw calls or paints more pixels than its budget.
+ * <p>
+ * Overdraw is expressed as the painted pixels divided by the pixels of the button disc, so 1.0
+ * means every pixel of the button is painted exactly once. The painted pixels are estimates
+ * computed from the geometry of each draw call, not measured on a device; they catch a change in
+ * the structure of a frame, not its real fill rate. Budgets are the current values with a small
+ * margin; lower them when the drawing gets cheaper. Allocations per frame are counted on a device
+ * by ProgressButtonAllocationBenchmark.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProgressButtonDrawTest {
+
+    private static final int SIZE = 200;
+    private static final float HALF_PROGRESS = 50f;
+    private static final int ANIMATION_FRAMES = 500;
+    private static final long NANOS_PER_FRAME = 16666667L;
+
+    private static final int PIE_DRAW_CALLS = 3;
+    private static final int PIE_ICON_DRAW_CALLS = 4;
+    private static final int CACHED_DRAW_CALLS = 2;
+    private static final int RING_DRAW_CALLS = 3;
+    private static final int RING_ICON_DRAW_CALLS = 4;
+    private static final double PIE_OVERDRAW = 2.2;
+    private static final double PIE_ICON_OVERDRAW = 2.5;
+    private static final double PIE_INDETERMINATE_OVERDRAW = 2.7;
+    private static final double CACHED_OVERDRAW = 1.5;
+    private static final double RING_OVERDRAW = 1.05;
+    private static final double RING_ICON_OVERDRAW = 1.35;
+    private static final double CACHED_INDETERMINATE_OVERDRAW = 1.7;
+
+    private RecordingCanvas canvas;
+    private ProgressButton button;
+
+    @Before
+    public void setUp() {
+        canvas = new RecordingCanvas();
+        button = new ProgressButton(RuntimeEnvironment.application);
+        button.onAttachedToWindow();
+        button.setIndeterminate(false);
+        button.measure(
+                View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY));
+        button.layout(0, 0, SIZE, SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        button.stopAnimating();
+    }
+
+    @Test
+    public void determinate_staysWithinBudget() {
+        button.setProgress(HALF_PROGRESS);
+        drawFrame();
+        assertEquals(PIE_DRAW_CALLS, canvas.getDrawCalls());
+        assertOverdraw(PIE_OVERDRAW);
+    }
+
+    @Test
+    public void determinateWithIcon_staysWithinBudget() {
+        button.setIcon(new RectIcon());
+        button.setProgress(HALF_PROGRESS);
+        drawFrame();
+        assertEquals(PIE_ICON_DRAW_CALLS, canvas.getDrawCalls());
+        assertOverdraw(PIE_ICON_OVERDRAW);
+    }
+
+    @Test
+    public void determinateCached_staysWithinBudget() {
+        button.setStaticLayerCacheEnabled(true);
+        button.setIcon(new RectIcon());
+        button.setProgress(HALF_PROGRESS);
+        drawFrame();
+        assertEquals(CACHED_DRAW_CALLS, canvas.getDrawCalls());
+        assertEquals(1, canvas.getBitmapCalls());
+        assertOverdraw(CACHED_OVERDRAW);
+    }
+
+    @Test
+    public void staticLayer_keptAcrossDetachAndReleasedOnTrim() {
+        button.setStaticLayerCacheEnabled(true);
+        drawFrame();
+        Bitmap layer = button.getStaticLayer();
+        assertNotNull(layer);
+
+        button.onDetachedFromWindow();
+        button.onAttachedToWindow();
+        drawFrame();
+        assertSame(layer, button.getStaticLayer());
+
+        button.onDetachedFromWindow();
+        RuntimeEnvironment.application.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertNull(button.getStaticLayer());
+    }
+
+    @Test
+    public void indeterminate_staysWithinBudget() {
+        button.setIndeterminate(true);
+        button.startAnimating();
+        assertTrue(maxAnimatedDrawCalls() <= PIE_DRAW_CALLS);
+    }
+
+    @Test
+    public void indeterminateWithIcon_staysWithinBudget() {
+        button.setIcon(new RectIcon());
+        button.setIndeterminate(true);
+        button.startAnimating();
+        assertTrue(maxAnimatedDrawCalls() <= PIE_ICON_DRAW_CALLS);
+    }
+
+    @Test
+    public void indeterminate_overdrawStaysWithinBudget() {
+        button.setIndeterminate(true);
+        button.startAnimating();
+        assertTrue(maxAnimatedOverdraw() <= PIE_INDETERMINATE_OVERDRAW);
+    }
+
+    @Test
+    public void indeterminateCached_staysWithinBudget() {
+        button.setStaticLayerCacheEnabled(true);
+        button.setIndeterminate(true);
+        button.startAnimating();
+        assertTrue(maxAnimatedDrawCalls() <= CACHED_DRAW_CALLS);
+        assertTrue(maxAnimatedOverdraw() <= CACHED_INDETERMINATE_OVERDRAW);
+    }
+
+    @Test
+    public void ring_staysWithinBudget() {
+        button.setDrawMode(ProgressButton.DRAW_MODE_RING);
+        button.setProgress(HALF_PROGRESS);
+        drawFrame();
+        assertEquals(RING_DRAW_CALLS, canvas.getDrawCalls());
+        assertOverdraw(RING_OVERDRAW);
+    }
+
+    @Test
+    public void ringWithIcon_staysWithinBudget() {
+        button.setDrawMode(ProgressButton.DRAW_MODE_RING);
+        button.setRoundedCaps(true);
+        button.setIcon(new RectIcon());
+        button.setProgress(HALF_PROGRESS);
+        drawFrame();
+        assertEquals(RING_ICON_DRAW_CALLS, canvas.getDrawCalls());
+        assertOverdraw(RING_ICON_OVERDRAW);
+    }
+
+    @Test
+    public void ringIndeterminate_staysWithinBudget() {
+        button.setDrawMode(ProgressButton.DRAW_MODE_RING);
+        button.setIndeterminate(true);
+        button.startAnimating();
+        assertTrue(maxAnimatedDrawCalls() <= RING_DRAW_CALLS);
+        assertTrue(maxAnimatedOverdraw() <= RING_OVERDRAW);
+    }
+
+    private void drawFrame() {
+        canvas.reset();
+        button.onDraw(canvas);
+    }
+
+    private void animateFrame(int index) {
+        AnimationTicker.getInstance().doFrame((index + 1) * NANOS_PER_FRAME);
+        drawFrame();
+    }
+
+    private double overdraw() {
+        double discPixels = Math.PI * SIZE * SIZE / 4;
+        return canvas.getPaintedPixels() / discPixels;
+    }
+
+    private void assertOverdraw(double budget) {
+        double overdraw = overdraw();
+        assertTrue("Overdraw " + overdraw + " exceeds " + budget, overdraw <= budget);
+    }
+
+    private int maxAnimatedDrawCalls() {
+        int max = 0;
+        for (int i = 0; i < ANIMATION_FRAMES; i++) {
+            animateFrame(i);
+            max = Math.max(max, canvas.getDrawCalls());
+        }
+        return max;
+    }
+
+    private double maxAnimatedOverdraw() {
+        double max = 0;
+        for (int i = 0; i < ANIMATION_FRAMES; i++) {
+            animateFrame(i);
+            max = Math.max(max, overdraw());
+        }
+        return max;
+    }
+
+    /**
+     * Icon drawing a single rectangle, without shadowed framework drawables.
+     */
+    static class RectIcon extends Drawable {
+        private final Paint paint = new Paint();
+
+        @Override
+        public void draw(Canvas canvas) {
+            canvas.drawRect(getBounds(), paint);
+        }
+
+        @Override
+        public void setAlpha(int alpha) {
+            paint.setAlpha(alpha);
+        }
+
+        @Override
+        public void setColorFilter(ColorFilter colorFilter) {
+            paint.setColorFilter(colorFilter);
+        }
+
+        @Override
+        public int getOpacity() {
+            return PixelFormat.OPAQUE;
+        }
+    }
+}
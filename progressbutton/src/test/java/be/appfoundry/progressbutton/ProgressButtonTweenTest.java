@@ -0,0 +1,171 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package be.appfoundry.progressbutton;
+
+import android.view.animation.AnticipateInterpolator;
+import android.view.animation.LinearInterpolator;
+import android.view.animation.OvershootInterpolator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import be.appfoundry.progressbutton.util.AnimationTicker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that animated progress changes ease toward their target and retarget mid-flight.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProgressButtonTweenTest {
+
+    private static final long NANOS_PER_FRAME = 10000000L;
+    private static final float DELTA = 0.0001f;
+
+    private ProgressButton button;
+    private int frame;
+
+    @Before
+    public void setUp() {
+        button = new ProgressButton(RuntimeEnvironment.application);
+        button.setIndeterminate(false);
+        button.setProgressInterpolator(new LinearInterpolator());
+        button.setProgressDuration(100);
+    }
+
+    @Test
+    public void setProgress_animatesToTarget() {
+        button.setProgress(50, true);
+        assertEquals(0, button.getProgress(), DELTA);
+
+        // the first frame starts the animation
+        nextFrame();
+        nextFrame();
+        nextFrame();
+        assertEquals(10, button.getProgress(), DELTA);
+        for (int i = 0; i < 10; i++) {
+            nextFrame();
+        }
+        assertEquals(50, button.getProgress(), DELTA);
+    }
+
+    @Test
+    public void setProgress_retargetsFromReachedValue() {
+        button.setProgress(50, true);
+        for (int i = 0; i < 6; i++) {
+            nextFrame();
+        }
+        float reached = button.getProgress();
+        assertTrue(reached > 0 && reached < 50);
+
+        button.setProgress(80, true);
+        nextFrame();
+        assertTrue(button.getProgress() > reached);
+        for (int i = 0; i < 10; i++) {
+            nextFrame();
+        }
+        assertEquals(80, button.getProgress(), DELTA);
+    }
+
+    @Test
+    public void setProgress_withoutAnimationCancelsTween() {
+        button.setProgress(50, true);
+        nextFrame();
+        nextFrame();
+        button.setProgress(20);
+        nextFrame();
+        assertEquals(20, button.getProgress(), DELTA);
+    }
+
+    @Test
+    public void postProgress_animatesToLatestValue() {
+        button.postProgress(30, true);
+        button.postProgress(50, true);
+        // the first frame applies the posted value, the next one starts the animation
+        nextFrame();
+        nextFrame();
+        nextFrame();
+        float reached = button.getProgress();
+        assertTrue(reached > 0 && reached < 50);
+        for (int i = 0; i < 10; i++) {
+            nextFrame();
+        }
+        assertEquals(50, button.getProgress(), DELTA);
+    }
+
+    @Test
+    public void postProgress_rangeCheckedWhenApplied() {
+        button.postProgress(80);
+        button.setMaxProgress(50);
+        nextFrame();
+        nextFrame();
+        assertEquals(50, button.getProgress(), DELTA);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void postProgress_rejectsNegativeProgress() {
+        button.postProgress(-1);
+    }
+
+    @Test
+    public void setProgress_overshootStaysInRange() {
+        button.setProgressInterpolator(new OvershootInterpolator());
+        button.setProgress(button.getMaxProgress(), true);
+        for (int i = 0; i < 12; i++) {
+            nextFrame();
+            assertTrue(button.getProgress() <= button.getMaxProgress());
+        }
+        assertEquals(button.getMaxProgress(), button.getProgress(), DELTA);
+    }
+
+    @Test
+    public void setProgress_anticipationStaysInRange() {
+        button.setProgressInterpolator(new AnticipateInterpolator());
+        button.setProgress(50, true);
+        for (int i = 0; i < 12; i++) {
+            nextFrame();
+            assertTrue(button.getProgress() >= 0);
+        }
+        assertEquals(50, button.getProgress(), DELTA);
+    }
+
+    @Test
+    public void setMaxProgress_retargetsRunningTween() {
+        button.setProgress(80, true);
+        for (int i = 0; i < 4; i++) {
+            nextFrame();
+        }
+        button.setMaxProgress(20);
+        for (int i = 0; i < 12; i++) {
+            nextFrame();
+            assertTrue(button.getProgress() <= 20);
+        }
+        assertEquals(20, button.getProgress(), DELTA);
+    }
+
+    private void nextFrame() {
+        frame++;
+        AnimationTicker.getInstance().doFrame(frame * NANOS_PER_FRAME);
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package be.appfoundry.progressbutton;
+
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+import android.graphics.drawable.Drawable;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import be.appfoundry.progressbutton.core.ProgressModel;
+import be.appfoundry.progressbutton.core.SegmentedProgress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProgressDrawableTest {
+
+    private static final int SIZE = 100;
+    private static final int RED = 0xFFFF0000;
+    private static final int BLUE = 0xFF0000FF;
+    private static final float DELTA = 0.0001f;
+
+    @Test
+    public void newDrawable_sharesStyleButNotProgress() {
+        ProgressDrawable first = new ProgressDrawable();
+        first.setProgress(40);
+        ProgressDrawable second = (ProgressDrawable) first.getConstantState().newDrawable();
+
+        assertSame(first.getConstantState(), second.getConstantState());
+        assertEquals(0, second.getProgress(), DELTA);
+
+    }
+
+    @Test
+    public void setter_restylesOnlyThisDrawable() {
+        ProgressDrawable first = new ProgressDrawable();
+        ProgressDrawable second = (ProgressDrawable) first.getConstantState().newDrawable();
+        Drawable.ConstantState shared = first.getConstantState();
+
+        Drawable mutated = second.mutate();
+        assertSame(second, mutated);
+
+        second.setColor(RED);
+        assertSame(shared, first.getConstantState());
+        assertNotSame(shared, second.getConstantState());
+        assertEquals(ProgressDrawable.DEFAULT_COLOR, first.getColor());
+        assertEquals(RED, second.getColor());
+    }
+
+    @Test
+    public void setter_sharesStateOfTheSameStyle() {
+        ProgressDrawable first = new ProgressDrawable();
+        ProgressDrawable second = new ProgressDrawable();
+
+        first.setColor(RED);
+        second.setColor(RED);
+
+        assertSame(first.getConstantState(), second.getConstantState());
+    }
+
+    @Test
+    public void setAlpha_keepsTheSharedState() {
+        ProgressDrawable drawable = new ProgressDrawable();
+        Drawable.ConstantState state = drawable.getConstantState();
+
+        drawable.setAlpha(128);
+        drawable.setColorFilter(new PorterDuffColorFilter(BLUE, PorterDuff.Mode.SRC_IN));
+
+        assertSame(state, drawable.getConstantState());
+        assertEquals(128, drawable.getAlpha());
+    }
+
+    @Test
+    public void setter_keepsStateWhenValueUnchanged() {
+        ProgressDrawable drawable = new ProgressDrawable();
+        Drawable.ConstantState state = drawable.getConstantState();
+
+        drawable.setColor(ProgressDrawable.DEFAULT_COLOR);
+
+        assertSame(state, drawable.getConstantState());
+    }
+
+    @Test
+    public void draw_ringModePaintsEachPixelOnce() {
+        ProgressDrawable drawable = new ProgressDrawable();
+        drawable.setDrawMode(ProgressDrawable.DRAW_MODE_RING);
+        drawable.setStrokeWidth(10);
+        drawable.setBounds(0, 0, SIZE, SIZE);
+        drawable.setProgress(25);
+
+        RecordingCanvas canvas = new RecordingCanvas();
+        drawable.draw(canvas);
+
+        assertEquals(3, canvas.getDrawCalls());
+        double discPixels = Math.PI * SIZE * SIZE / 4;
+        assertEquals(1, canvas.getPaintedPixels() / discPixels, 0.01);
+    }
+
+    @Test
+    public void draw_segmentsInOneBatchedCall() {
+        SegmentedProgress segments = new SegmentedProgress(100, 100, 100, 100, 100, 100, 100, 100);
+        for (int i = 0; i < segments.getSegmentCount(); i++) {
+            segments.set(i, i * 10);
+        }
+        ProgressDrawable drawable = new ProgressDrawable();
+        drawable.setDrawMode(ProgressDrawable.DRAW_MODE_RING);
+        drawable.setBounds(0, 0, SIZE, SIZE);
+        drawable.setSegmentedProgress(segments);
+
+        RecordingCanvas canvas = new RecordingCanvas();
+        drawable.draw(canvas);
+
+        // track, one path for all segments, inner disc
+        assertEquals(3, canvas.getDrawCalls());
+        assertEquals(1, canvas.getPathCalls());
+        assertEquals(0, canvas.getOtherCalls());
+    }
+
+    @Test
+    public void draw_segmentsInSweepModeUseTheGradient() {
+        SegmentedProgress segments = new SegmentedProgress(100, 100);
+        segments.set(0, 50);
+        segments.set(1, 100);
+        ProgressDrawable drawable = new ProgressDrawable();
+        drawable.setDrawMode(ProgressDrawable.DRAW_MODE_SWEEP);
+        drawable.setBounds(0, 0, SIZE, SIZE);
+        drawable.setSegmentedProgress(segments);
+
+        RecordingCanvas canvas = new RecordingCanvas();
+        drawable.draw(canvas);
+
+        // track, one path for all segments with the gradient, inner disc
+        assertEquals(3, canvas.getDrawCalls());
+        assertEquals(1, canvas.getPathCalls());
+        assertNotNull(canvas.getPathShader());
+
+        drawable.setDrawMode(ProgressDrawable.DRAW_MODE_RING);
+        canvas.reset();
+        drawable.draw(canvas);
+        assertNull(canvas.getPathShader());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void draw_segmentsAreExcludedFromOverdrawChecks() {
+        SegmentedProgress segments = new SegmentedProgress(100, 100);
+        segments.set(0, 50);
+        ProgressDrawable drawable = new ProgressDrawable();
+        drawable.setBounds(0, 0, SIZE, SIZE);
+        drawable.setSegmentedProgress(segments);
+
+        RecordingCanvas canvas = new RecordingCanvas();
+        drawable.draw(canvas);
+
+        canvas.getPaintedPixels();
+    }
+
+    @Test
+    public void intern_sharesStyleUntilChanged() {
+        ProgressDrawable.ProgressState.Builder template =
+                new ProgressDrawable.ProgressState.Builder().setColor(RED);
+        ProgressDrawable.ProgressState style = ProgressDrawable.ProgressState.intern(template);
+        assertSame(style, ProgressDrawable.ProgressState.intern(template));
+        assertSame(style, ProgressDrawable.ProgressState.intern(
+                new ProgressDrawable.ProgressState.Builder().setColor(RED)));
+
+        // changing the builder afterwards does not change the interned style
+        template.setColor(BLUE);
+        assertEquals(RED, style.color);
+        assertNotSame(style, ProgressDrawable.ProgressState.intern(template));
+
+        ProgressDrawable first = new ProgressDrawable(style, new ProgressModel());
+        ProgressDrawable second = new ProgressDrawable(style, new ProgressModel());
+        second.setColor(BLUE);
+
+        assertSame(style, first.getConstantState());
+        assertNotSame(style, second.getConstantState());
+        assertEquals(RED, first.getColor());
+        assertEquals(BLUE, second.getColor());
+        assertEquals(RED, style.color);
+    }
+
+    @Test
+    public void draw_cometTurnsWithoutArcs() {
+        ProgressDrawable drawable = new ProgressDrawable();
+        drawable.setDrawMode(ProgressDrawable.DRAW_MODE_SWEEP);
+        drawable.setCometTail(true);
+        drawable.setBounds(0, 0, SIZE, SIZE);
+        drawable.start();
+
+        RecordingCanvas canvas = new RecordingCanvas();
+        drawable.draw(canvas);
+        drawable.stop();
+
+        // track, comet and inner disc
+        assertEquals(3, canvas.getCircleCalls());
+        assertEquals(0, canvas.getArcCalls());
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package be.appfoundry.progressbutton;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that buttons recycled between items show the state of the item they are bound to.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProgressStateStoreTest {
+
+    private static final float DELTA = 0.0001f;
+
+    private ProgressStateStore store;
+    private ProgressButton button;
+
+    @Before
+    public void setUp() {
+        store = new ProgressStateStore();
+        button = new ProgressButton(RuntimeEnvironment.application);
+        button.setIndeterminate(false);
+    }
+
+    @Test
+    public void bind_restoresStateOfItem() {
+        store.bind(button, 1L);
+        button.setProgress(40);
+        store.bind(button, 2L);
+        assertEquals(0, button.getProgress(), DELTA);
+        button.setProgress(70);
+
+        store.bind(button, 1L);
+        assertEquals(40, button.getProgress(), DELTA);
+        store.bind(button, 2L);
+        assertEquals(70, button.getProgress(), DELTA);
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    public void bind_doesNotLeakStateBetweenButtons() {
+        ProgressButton other = new ProgressButton(RuntimeEnvironment.application);
+        other.setIndeterminate(false);
+        store.bind(button, 1L);
+        button.setProgress(40);
+        store.unbind(button);
+
+        store.bind(other, 1L);
+        assertEquals(40, other.getProgress(), DELTA);
+        store.bind(button, 2L);
+        assertEquals(0, button.getProgress(), DELTA);
+        assertTrue(store.contains(1L));
+    }
+}
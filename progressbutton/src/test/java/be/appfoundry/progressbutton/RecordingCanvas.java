@@ -0,0 +1,186 @@
+package be.appfoundry.progressbutton;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Shader;
+
+/**
+ * Canvas recording the number of draw calls and an estimate of the painted pixels, without
+ * rendering anything. Painted pixels are computed from the geometry of each primitive, so
+ * pixels painted more than once show up as overdraw.
+ * <p>
+ * Paths are counted but have no geometry the canvas can measure, so frames drawing a path, such
+ * as segmented progress, are excluded from the overdraw checks: {@link #getPaintedPixels()} fails
+ * for them instead of returning a count that is too low.
+ */
+public class RecordingCanvas extends Canvas {
+
+    private static final float FULL_CIRCLE = 360f;
+
+    private int drawCalls;
+    private int arcCalls;
+    private int circleCalls;
+    private int bitmapCalls;
+    private int pathCalls;
+    private Shader pathShader;
+    private int otherCalls;
+    private double paintedPixels;
+    private final Rect clip = new Rect(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    /**
+     * Clears the recorded values, to start a new frame.
+     */
+    public void reset() {
+        drawCalls = 0;
+        arcCalls = 0;
+        circleCalls = 0;
+        bitmapCalls = 0;
+        pathCalls = 0;
+        pathShader = null;
+        otherCalls = 0;
+        paintedPixels = 0;
+    }
+
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    public int getArcCalls() {
+        return arcCalls;
+    }
+
+    public int getCircleCalls() {
+        return circleCalls;
+    }
+
+    public int getBitmapCalls() {
+        return bitmapCalls;
+    }
+
+    public int getPathCalls() {
+        return pathCalls;
+    }
+
+    /**
+     * Returns the shader of the last path drawn, null if none.
+     */
+    public Shader getPathShader() {
+        return pathShader;
+    }
+
+    public int getOtherCalls() {
+        return otherCalls;
+    }
+
+    /**
+     * Returns the estimated number of painted pixels, counting pixels painted more than once
+     * once per paint.
+     *
+     * @throws IllegalStateException if a path was drawn, its pixels are not counted
+     */
+    public double getPaintedPixels() {
+        if (pathCalls > 0) {
+            throw new IllegalStateException(
+                    pathCalls + " paths drawn, their pixels are not counted");
+        }
+        return paintedPixels;
+    }
+
+    /**
+     * Sets the bounds returned by {@link #getClipBounds(Rect)}, as for a partial redraw.
+     */
+    public void setClipBounds(int left, int top, int right, int bottom) {
+        clip.set(left, top, right, bottom);
+    }
+
+    @Override
+    public boolean getClipBounds(Rect bounds) {
+        bounds.set(clip);
+        return !clip.isEmpty();
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius, Paint paint) {
+        drawCalls++;
+        circleCalls++;
+        paintedPixels += ringArea(radius, paint);
+    }
+
+    @Override
+    public void drawArc(RectF oval, float startAngle, float sweepAngle, boolean useCenter,
+                        Paint paint) {
+        drawCalls++;
+        arcCalls++;
+        float radius = oval.width() / 2;
+        float fraction = Math.min(Math.abs(sweepAngle), FULL_CIRCLE) / FULL_CIRCLE;
+        paintedPixels += (useCenter ? Math.PI * radius * radius : ringArea(radius, paint))
+                * fraction;
+    }
+
+    @Override
+    public void drawPath(Path path, Paint paint) {
+        drawCalls++;
+        pathCalls++;
+        pathShader = paint.getShader();
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+        drawCalls++;
+        bitmapCalls++;
+        paintedPixels += (double) bitmap.getWidth() * bitmap.getHeight();
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+        drawCalls++;
+        bitmapCalls++;
+        paintedPixels += (double) dst.width() * dst.height();
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+        drawCalls++;
+        bitmapCalls++;
+        paintedPixels += (double) dst.width() * dst.height();
+    }
+
+    @Override
+    public void drawRect(Rect rect, Paint paint) {
+        drawCalls++;
+        otherCalls++;
+        paintedPixels += (double) rect.width() * rect.height();
+    }
+
+    @Override
+    public void drawRect(RectF rect, Paint paint) {
+        drawCalls++;
+        otherCalls++;
+        paintedPixels += (double) rect.width() * rect.height();
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        drawCalls++;
+        otherCalls++;
+        paintedPixels += (double) (right - left) * (bottom - top);
+    }
+
+    /**
+     * Returns the area painted by a circle or a full arc: a disc for fills, a ring of the stroke
+     * width for strokes.
+     */
+    private static double ringArea(float radius, Paint paint) {
+        if (paint.getStyle() == Paint.Style.STROKE) {
+            float half = paint.getStrokeWidth() / 2;
+            float outer = radius + half;
+            float inner = Math.max(0, radius - half);
+            return Math.PI * (outer * outer - inner * inner);
+        }
+        return Math.PI * radius * radius;
+    }
+}
@@ -0,0 +1,157 @@
+package be.appfoundry.progressbutton.io;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProgressTrackerTest {
+
+    private static final int SIZE = 10000;
+
+    @Test
+    public void inputStream_countsAllBytes() throws IOException {
+        RecordingTracker tracker = new RecordingTracker(SIZE);
+        InputStream in = new ProgressInputStream(new ByteArrayInputStream(new byte[SIZE]), tracker);
+        byte[] buffer = new byte[333];
+        while (in.read(buffer) >= 0) {
+            in.read();
+        }
+        in.close();
+        assertEquals(SIZE, tracker.getBytes());
+        assertEquals(SIZE, tracker.lastReport);
+    }
+
+    @Test
+    public void outputStream_countsAllBytes() throws IOException {
+        RecordingTracker tracker = new RecordingTracker(SIZE);
+        OutputStream out = new ProgressOutputStream(new ByteArrayOutputStream(), tracker);
+        out.write(new byte[SIZE - 1]);
+        out.write(0);
+        out.close();
+        assertEquals(SIZE, tracker.getBytes());
+        assertEquals(SIZE, tracker.lastReport);
+    }
+
+    @Test
+    public void channels_countAllBytes() throws IOException {
+        RecordingTracker readTracker = new RecordingTracker(SIZE);
+        RecordingTracker writeTracker = new RecordingTracker(SIZE);
+        ReadableByteChannel source = new ProgressReadableByteChannel(
+                Channels.newChannel(new ByteArrayInputStream(new byte[SIZE])), readTracker);
+        WritableByteChannel target = new ProgressWritableByteChannel(
+                Channels.newChannel(new ByteArrayOutputStream()), writeTracker);
+        ByteBuffer buffer = ByteBuffer.allocate(512);
+        while (source.read(buffer) >= 0) {
+            buffer.flip();
+            target.write(buffer);
+            buffer.clear();
+        }
+        assertEquals(SIZE, readTracker.getBytes());
+        assertEquals(SIZE, writeTracker.getBytes());
+    }
+
+    @Test
+    public void transferTo_reportsFinalCount() throws IOException {
+        File file = File.createTempFile("progress", null);
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(new byte[SIZE]);
+            } finally {
+                out.close();
+            }
+            RecordingTracker tracker = new RecordingTracker(SIZE);
+            tracker.setMinIntervalMillis(0);
+            tracker.setMinBytesDelta(SIZE * 2);
+            RandomAccessFile source = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = source.getChannel();
+                WritableByteChannel target = Channels.newChannel(new ByteArrayOutputStream());
+                assertEquals(SIZE, tracker.transferTo(channel, 0, SIZE, target));
+            } finally {
+                source.close();
+            }
+            assertEquals(1, tracker.reports);
+            assertEquals(SIZE, tracker.lastReport);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void transferFrom_reportsFinalCount() throws IOException {
+        File file = File.createTempFile("progress", null);
+        try {
+            RecordingTracker tracker = new RecordingTracker(SIZE);
+            tracker.setMinIntervalMillis(0);
+            tracker.setMinBytesDelta(SIZE * 2);
+            ReadableByteChannel source =
+                    Channels.newChannel(new ByteArrayInputStream(new byte[SIZE]));
+            RandomAccessFile target = new RandomAccessFile(file, "rw");
+            try {
+                assertEquals(SIZE, tracker.transferFrom(source, target.getChannel(), 0, SIZE));
+            } finally {
+                target.close();
+            }
+            assertEquals(1, tracker.reports);
+            assertEquals(SIZE, tracker.lastReport);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void bytesDelta_samplesReports() {
+        RecordingTracker tracker = new RecordingTracker(SIZE);
+        tracker.setMinIntervalMillis(0);
+        tracker.setMinBytesDelta(1000);
+        for (int i = 0; i < SIZE; i++) {
+            tracker.onBytes(1);
+        }
+        assertEquals(SIZE / 1000, tracker.reports);
+    }
+
+    @Test
+    public void noSampling_reportsEveryTransfer() {
+        RecordingTracker tracker = new RecordingTracker(SIZE);
+        tracker.setMinIntervalMillis(0);
+        for (int i = 0; i < 100; i++) {
+            tracker.onBytes(1);
+        }
+        assertEquals(100, tracker.reports);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void totalBytes_mustBePositive() {
+        new RecordingTracker(0);
+    }
+
+    private static class RecordingTracker extends ProgressTracker {
+        int reports;
+        long lastReport;
+
+        RecordingTracker(long totalBytes) {
+            super(null, totalBytes);
+        }
+
+        @Override
+        protected void onReport(long transferredBytes) {
+            reports++;
+            lastReport = transferredBytes;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package be.appfoundry.progressbutton.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RenderMetricsTest {
+
+    private static final long WINDOW_NANOS = 1000000000L;
+    private static final long FRAME_NANOS = 16000000L;
+    private static final float DELTA = 0.001f;
+
+    @Test
+    public void report_onceAWindowOnTheReportingClock() {
+        FakeClockMetrics metrics = new FakeClockMetrics();
+        metrics.now = 5 * WINDOW_NANOS;
+        metrics.recordDraw(0, 1);
+        for (int i = 0; i < 10; i++) {
+            metrics.recordInvalidate();
+        }
+
+        metrics.now += WINDOW_NANOS / 2;
+        metrics.recordDraw(0, 1);
+        assertEquals(0, metrics.reports);
+
+        metrics.now += WINDOW_NANOS / 2;
+        metrics.recordDraw(0, 1);
+        assertEquals(1, metrics.reports);
+        assertEquals(10, metrics.getInvalidationsPerSecond(), DELTA);
+    }
+
+    @Test
+    public void report_fallbackFrameTimesDoNotSkewTheWindow() {
+        FakeClockMetrics metrics = new FakeClockMetrics();
+        metrics.now = 5 * WINDOW_NANOS;
+        metrics.recordDraw(metrics.now, metrics.now + 1);
+
+        // before Jelly Bean frame times come from the uptime clock, far from the draw times
+        long uptimeFrameNanos = 1000 * WINDOW_NANOS;
+        for (int i = 0; i < 10; i++) {
+            metrics.recordAnimationTick(uptimeFrameNanos, FRAME_NANOS, FRAME_NANOS);
+            metrics.recordDraw(metrics.now, metrics.now + 1);
+            uptimeFrameNanos += FRAME_NANOS;
+        }
+        assertEquals(0, metrics.reports);
+
+        metrics.now += WINDOW_NANOS;
+        metrics.recordAnimationTick(uptimeFrameNanos, FRAME_NANOS, FRAME_NANOS);
+        assertEquals(1, metrics.reports);
+        assertEquals(11, metrics.getAnimationTicks());
+    }
+
+    @Test
+    public void flush_reportsThePartialWindow() {
+        FakeClockMetrics metrics = new FakeClockMetrics();
+        metrics.now = 5 * WINDOW_NANOS;
+        metrics.recordDraw(0, 1);
+        for (int i = 0; i < 5; i++) {
+            metrics.recordInvalidate();
+        }
+
+        metrics.now += WINDOW_NANOS / 2;
+        metrics.flush();
+        assertEquals(1, metrics.reports);
+        assertEquals(10, metrics.getInvalidationsPerSecond(), DELTA);
+
+        // nothing recorded since, nothing to report
+        metrics.flush();
+        assertEquals(1, metrics.reports);
+
+        // the idle time before the next record is not part of the next window
+        metrics.now += 10 * WINDOW_NANOS;
+        metrics.recordDraw(0, 1);
+        metrics.now += WINDOW_NANOS / 2;
+        metrics.recordDraw(0, 1);
+        assertEquals(1, metrics.reports);
+    }
+
+    private static class FakeClockMetrics extends RenderMetrics implements RenderMetrics.Listener {
+        long now;
+        int reports;
+
+        FakeClockMetrics() {
+            super(null);
+            setListener(this);
+        }
+
+        @Override
+        long nanoTime() {
+            return now;
+        }
+
+        @Override
+        public void onMetricsReport(RenderMetrics metrics) {
+            reports++;
+        }
+    }
+}
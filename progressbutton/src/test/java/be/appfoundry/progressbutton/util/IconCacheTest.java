@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package be.appfoundry.progressbutton.util;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.view.ContextThemeWrapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import be.appfoundry.progressbutton.BuildConfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class IconCacheTest {
+
+    private static final int ICON = android.R.drawable.ic_delete;
+    private static final int SIZE = 10;
+    private static final int BYTES_PER_ICON = SIZE * SIZE * 4;
+    private static final int TINT = 0xFFFF0000;
+
+    private Context context;
+    private IconCache cache;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        cache = IconCache.getInstance(context);
+        cache.clear();
+    }
+
+    @After
+    public void tearDown() {
+        cache.setMaxBytes(IconCache.DEFAULT_MAX_BYTES);
+        cache.clear();
+    }
+
+    @Test
+    public void get_sharesRastersWithTheSameKey() {
+        Bitmap first = cache.get(context, ICON, SIZE, 0);
+        assertSame(first, cache.get(context, ICON, SIZE, 0));
+        assertNotSame(first, cache.get(context, ICON, SIZE, TINT));
+        assertNotSame(first, cache.get(context, ICON, SIZE + 1, 0));
+        assertEquals(SIZE, first.getWidth());
+    }
+
+    @Test
+    public void get_keepsRastersPerThemeColors() {
+        // the dark and light material themes have different accent colors
+        Context dark = new ContextThemeWrapper(context, android.R.style.Theme_Material);
+        Context light = new ContextThemeWrapper(context, android.R.style.Theme_Material_Light);
+        Context otherDark = new ContextThemeWrapper(context, android.R.style.Theme_Material);
+        Bitmap first = cache.get(dark, ICON, SIZE, 0);
+        Bitmap second = cache.get(light, ICON, SIZE, 0);
+
+        assertNotSame(first, second);
+        assertSame(first, cache.get(otherDark, ICON, SIZE, 0));
+        assertSame(second, cache.get(light, ICON, SIZE, 0));
+        assertEquals(2, cache.getCount());
+    }
+
+    @Test
+    public void get_sharesTintedRastersAcrossThemes() {
+        Context dark = new ContextThemeWrapper(context, android.R.style.Theme_Material);
+        Context light = new ContextThemeWrapper(context, android.R.style.Theme_Material_Light);
+        Bitmap first = cache.get(dark, ICON, SIZE, TINT);
+
+        assertSame(first, cache.get(light, ICON, SIZE, TINT));
+        assertEquals(1, cache.getCount());
+    }
+
+    @Test
+    public void onConfigurationChanged_evictsOnlyOnDensityOrNightMode() {
+        Configuration config = new Configuration(context.getResources().getConfiguration());
+        cache.get(context, ICON, SIZE, 0);
+
+        config.orientation = config.orientation == Configuration.ORIENTATION_LANDSCAPE
+                ? Configuration.ORIENTATION_PORTRAIT
+                : Configuration.ORIENTATION_LANDSCAPE;
+        cache.onConfigurationChanged(config);
+        assertEquals(1, cache.getCount());
+
+        config.uiMode ^= Configuration.UI_MODE_NIGHT_MASK;
+        cache.onConfigurationChanged(config);
+        assertEquals(0, cache.getCount());
+
+        // restores the night mode of the shared cache for the other tests
+        config.uiMode ^= Configuration.UI_MODE_NIGHT_MASK;
+        cache.onConfigurationChanged(config);
+    }
+
+    @Test
+    public void get_evictsLeastRecentlyUsedAboveTheCap() {
+        cache.setMaxBytes(2 * BYTES_PER_ICON);
+        Bitmap first = cache.get(context, ICON, SIZE, 0);
+        cache.get(context, ICON, SIZE, TINT);
+        // touch the first icon so the tinted one is the least recently used
+        cache.get(context, ICON, SIZE, 0);
+        cache.get(context, ICON, SIZE, 1);
+
+        assertEquals(2, cache.getCount());
+        assertTrue(cache.getBytes() <= cache.getMaxBytes());
+        assertSame(first, cache.get(context, ICON, SIZE, 0));
+    }
+
+    @Test
+    public void onTrimMemory_evictsIcons() {
+        cache.setMaxBytes(2 * BYTES_PER_ICON);
+        cache.get(context, ICON, SIZE, 0);
+        cache.get(context, ICON, SIZE, TINT);
+
+        cache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertEquals(1, cache.getCount());
+
+        cache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertEquals(0, cache.getCount());
+        assertEquals(0, cache.getBytes());
+    }
+}
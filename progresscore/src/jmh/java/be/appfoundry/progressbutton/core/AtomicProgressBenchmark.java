@@ -0,0 +1,37 @@
+package be.appfoundry.progressbutton.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of progress offered by several worker threads while one consumer takes it.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AtomicProgressBenchmark {
+
+    private final AtomicProgress progress = new AtomicProgress();
+
+    @Benchmark
+    @Group("postProgress")
+    @GroupThreads(3)
+    public boolean offer() {
+        return progress.offer(1f);
+    }
+
+    @Benchmark
+    @Group("postProgress")
+    @GroupThreads(1)
+    public float take() {
+        return progress.take();
+    }
+}
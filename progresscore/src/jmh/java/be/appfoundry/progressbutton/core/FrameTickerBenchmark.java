@@ -0,0 +1,60 @@
+package be.appfoundry.progressbutton.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one frame ticking many animating instances.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FrameTickerBenchmark {
+
+    private static final long NANOS_PER_FRAME = 16666667L;
+    private static final float DEGREES_PER_SECOND = 216f;
+
+    @Param({"1", "100", "1000"})
+    public int instances;
+
+    private FrameTicker ticker;
+    private long frameTimeNanos;
+
+    @Setup
+    public void setUp() {
+        ticker = new FrameTicker();
+        for (int i = 0; i < instances; i++) {
+            ticker.register(new ModelCallback());
+        }
+    }
+
+    @Benchmark
+    public boolean tick() {
+        frameTimeNanos += NANOS_PER_FRAME;
+        return ticker.dispatch(frameTimeNanos);
+    }
+
+    /**
+     * Advances one model per frame, like an animating button.
+     */
+    static class ModelCallback implements FrameTicker.Callback {
+        private final ProgressModel model = new ProgressModel();
+        private long lastFrameTimeNanos;
+
+        @Override
+        public boolean onAnimationFrame(long frameTimeNanos) {
+            long elapsed = lastFrameTimeNanos == 0 ? 0 : frameTimeNanos - lastFrameTimeNanos;
+            lastFrameTimeNanos = frameTimeNanos;
+            model.advanceByTime(elapsed, DEGREES_PER_SECOND);
+            return true;
+        }
+    }
+}
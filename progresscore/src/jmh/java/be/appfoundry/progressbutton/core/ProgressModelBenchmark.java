@@ -0,0 +1,50 @@
+package be.appfoundry.progressbutton.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a single progress update and of a single indeterminate animation step.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProgressModelBenchmark {
+
+    private static final float MIN_VISIBLE_DEGREES = 0.5f;
+    private static final long NANOS_PER_FRAME = 16666667L;
+    private static final float DEGREES_PER_SECOND = 216f;
+
+    private ProgressModel model;
+    private float progress;
+
+    @Setup
+    public void setUp() {
+        model = new ProgressModel();
+        model.setMaxProgress(1000000);
+    }
+
+    @Benchmark
+    public boolean update() {
+        progress = progress >= model.getMaxProgress() ? 0 : progress + 1;
+        model.setProgress(progress);
+        boolean visible = model.hasVisibleChange(MIN_VISIBLE_DEGREES);
+        if (visible) {
+            model.markDrawn();
+        }
+        return visible;
+    }
+
+    @Benchmark
+    public float animationStep() {
+        model.advanceByTime(NANOS_PER_FRAME, DEGREES_PER_SECOND);
+        return model.getDegrees();
+    }
+}
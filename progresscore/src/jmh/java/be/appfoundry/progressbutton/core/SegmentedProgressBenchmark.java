@@ -0,0 +1,59 @@
+package be.appfoundry.progressbutton.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of segment updates by several worker threads, each on its own segment, while one
+ * consumer reads the total.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SegmentedProgressBenchmark {
+
+    private static final int WORKERS = 4;
+    private static final long SEGMENT_SIZE = 1L << 40;
+
+    private final SegmentedProgress progress =
+            new SegmentedProgress(SEGMENT_SIZE, SEGMENT_SIZE, SEGMENT_SIZE, SEGMENT_SIZE);
+    private final AtomicInteger nextSegment = new AtomicInteger();
+
+    @Benchmark
+    @Group("segments")
+    @GroupThreads(WORKERS)
+    public void add(Worker worker) {
+        progress.add(worker.segment, 1);
+    }
+
+    @Benchmark
+    @Group("segments")
+    @GroupThreads(1)
+    public long total() {
+        progress.takeChanged();
+        return progress.getTotal();
+    }
+
+    /**
+     * Assigns every worker thread its own segment.
+     */
+    @State(Scope.Thread)
+    public static class Worker {
+        int segment;
+
+        @Setup
+        public void setUp(SegmentedProgressBenchmark benchmark) {
+            segment = benchmark.nextSegment.getAndIncrement() % WORKERS;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package be.appfoundry.progressbutton.core;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free holder for the latest progress value reported from any thread. Values offered
+ * before the consumer takes them are coalesced: only the latest one is kept and only the first
+ * offer asks the caller to schedule a delivery. Every value carries a flag telling the consumer
+ * whether to animate to it; value and flag are stored together, so they always match.
+ */
+public final class AtomicProgress {
+
+    private static final long ANIMATE_FLAG = 1L << 32;
+    private static final long VALUE_MASK = 0xFFFFFFFFL;
+
+    /**
+     * The bits of the latest value in the low half, {@link #ANIMATE_FLAG} above them.
+     */
+    private final AtomicLong valueBits = new AtomicLong();
+    private final AtomicBoolean pending = new AtomicBoolean();
+    /**
+     * The flag of the last taken value. Only read and written by the consumer.
+     */
+    private boolean animated;
+
+    /**
+     * Stores the latest value, to be shown without animation. Can be called from any thread.
+     *
+     * @param value The progress value.
+     * @return true if no delivery was pending, so the caller has to schedule one.
+     */
+    public boolean offer(float value) {
+        return offer(value, false);
+    }
+
+    /**
+     * Stores the latest value. Can be called from any thread.
+     *
+     * @param value   The progress value.
+     * @param animate True if the consumer should animate to the value.
+     * @return true if no delivery was pending, so the caller has to schedule one.
+     */
+    public boolean offer(float value, boolean animate) {
+        long bits = Float.floatToRawIntBits(value) & VALUE_MASK;
+        valueBits.set(animate ? bits | ANIMATE_FLAG : bits);
+        return pending.compareAndSet(false, true);
+    }
+
+    /**
+     * Returns the latest value and clears the pending delivery. Offers racing with this call
+     * schedule a new delivery, so no value is lost.
+     */
+    public float take() {
+        pending.set(false);
+        long bits = valueBits.get();
+        animated = (bits & ANIMATE_FLAG) != 0;
+        return Float.intBitsToFloat((int) bits);
+    }
+
+    /**
+     * Returns true if the value returned by the last {@link #take()} is to be animated to. Must
+     * be called by the consumer.
+     */
+    public boolean isAnimated() {
+        return animated;
+    }
+
+    /**
+     * Returns true if a value was offered that has not been taken yet.
+     */
+    public boolean isPending() {
+        return pending.get();
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package be.appfoundry.progressbutton.core;
+
+/**
+ * Decides on which display frames an animation updates. On a healthy display every frame
+ * updates, so high refresh rate panels get as many updates as they can show. When frames keep
+ * arriving late, the pacer updates only every second, third or fourth frame to take work off the
+ * struggling thread, and steps back once frames have been on time for a second again, whatever
+ * the refresh rate.
+ * <p>
+ * The pacer only picks frames; animations should advance by the time elapsed between updates so
+ * their speed does not depend on the chosen rate. Not thread safe.
+ */
+public class FramePacer {
+
+    /**
+     * The refresh rate assumed when the display does not report one.
+     */
+    public static final float DEFAULT_REFRESH_RATE = 60f;
+    /**
+     * The highest number of display frames between two updates.
+     */
+    public static final int MAX_FRAME_SKIP = 4;
+
+    private static final float NANOS_PER_SECOND = 1000000000f;
+    /**
+     * A frame is late when it arrives this many refresh intervals after the previous one.
+     */
+    private static final float LATE_FACTOR = 1.5f;
+    /**
+     * The number of late frames in a row that lowers the update rate.
+     */
+    private static final int LATE_FRAMES_TO_SLOW_DOWN = 3;
+    /**
+     * The time frames have to be on time in a row before the update rate is raised again, in
+     * nanoseconds. Measured in time rather than frames so recovery takes as long on a 120 Hz
+     * display as on a 60 Hz one.
+     */
+    private static final long ON_TIME_NANOS_TO_SPEED_UP = 1000000000L;
+
+    private long refreshIntervalNanos;
+    private float refreshRate;
+    private int frameSkip = 1;
+    private long lastFrameTimeNanos;
+    private long lastUpdateTimeNanos;
+    private int lateFrames;
+    private long onTimeNanos;
+
+    /**
+     * Creates a pacer for a display with the given refresh rate.
+     *
+     * @param refreshRate The refresh rate of the display in frames per second.
+     */
+    public FramePacer(float refreshRate) {
+        setRefreshRate(refreshRate);
+    }
+
+    /**
+     * Returns the refresh rate of the display in frames per second.
+     */
+    public float getRefreshRate() {
+        return refreshRate;
+    }
+
+    /**
+     * Sets the refresh rate of the display, for example after the view moved to another display.
+     * Rates of 0 or less fall back to {@link #DEFAULT_REFRESH_RATE}.
+     */
+    public void setRefreshRate(float refreshRate) {
+        this.refreshRate = refreshRate > 0 ? refreshRate : DEFAULT_REFRESH_RATE;
+        refreshIntervalNanos = (long) (NANOS_PER_SECOND / this.refreshRate);
+    }
+
+    /**
+     * Returns the number of display frames between two updates, 1 when every frame updates.
+     */
+    public int getFrameSkip() {
+        return frameSkip;
+    }
+
+    /**
+     * Returns the chosen number of updates per second.
+     */
+    public float getUpdateRate() {
+        return refreshRate / frameSkip;
+    }
+
+    /**
+     * Returns the chosen time between two updates in nanoseconds.
+     */
+    public long getUpdateIntervalNanos() {
+        return refreshIntervalNanos * frameSkip;
+    }
+
+    /**
+     * Forgets the previous frame, so the time an animation was stopped does not count as a late
+     * frame. The chosen rate is kept.
+     */
+    public void reset() {
+        lastFrameTimeNanos = 0;
+        lastUpdateTimeNanos = 0;
+        lateFrames = 0;
+        onTimeNanos = 0;
+    }
+
+    /**
+     * Records a display frame and returns true if the animation should update on it.
+     *
+     * @param frameTimeNanos The time of the frame in nanoseconds.
+     */
+    public boolean onFrame(long frameTimeNanos) {
+        if (lastFrameTimeNanos != 0) {
+            adapt(frameTimeNanos - lastFrameTimeNanos);
+        }
+        lastFrameTimeNanos = frameTimeNanos;
+        // half an interval of slack so frames slightly early still update
+        long due = lastUpdateTimeNanos + getUpdateIntervalNanos() - refreshIntervalNanos / 2;
+        if (lastUpdateTimeNanos == 0 || frameTimeNanos >= due) {
+            lastUpdateTimeNanos = frameTimeNanos;
+            return true;
+        }
+        return false;
+    }
+
+    private void adapt(long intervalNanos) {
+        if (intervalNanos > refreshIntervalNanos * LATE_FACTOR) {
+            onTimeNanos = 0;
+            if (++lateFrames >= LATE_FRAMES_TO_SLOW_DOWN && frameSkip < MAX_FRAME_SKIP) {
+                frameSkip++;
+                lateFrames = 0;
+            }
+        } else {
+            lateFrames = 0;
+            onTimeNanos += intervalNanos;
+            if (onTimeNanos >= ON_TIME_NANOS_TO_SPEED_UP && frameSkip > 1) {
+                frameSkip--;
+                onTimeNanos = 0;
+            }
+        }
+    }
+
+}
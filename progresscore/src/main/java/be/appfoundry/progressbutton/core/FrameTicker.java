@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package be.appfoundry.progressbutton.core;
+
+import java.util.ArrayList;
+
+/**
+ * Advances any number of registered callbacks in a single pass per frame. Callbacks can
+ * unregister themselves, or each other, while a frame is dispatched. Not thread safe: a ticker is
+ * meant to be driven from one thread, typically the UI thread.
+ */
+public class FrameTicker {
+
+    private final ArrayList<Callback> callbacks = new ArrayList<>();
+    private boolean dispatching;
+
+    /**
+     * Registers a callback. It is called from the next dispatched frame on until it is
+     * unregistered. Does nothing if the callback is already registered.
+     */
+    public void register(Callback callback) {
+        if (!callbacks.contains(callback)) {
+            callbacks.add(callback);
+        }
+    }
+
+    /**
+     * Unregisters a callback. Does nothing if the callback is not registered.
+     *
+     * @return true if no callbacks are left.
+     */
+    public boolean unregister(Callback callback) {
+        int index = callbacks.indexOf(callback);
+        if (index >= 0) {
+            if (dispatching) {
+                callbacks.set(index, null);
+            } else {
+                callbacks.remove(index);
+            }
+        }
+        return !dispatching && callbacks.isEmpty();
+    }
+
+    /**
+     * Returns true if the callback is registered.
+     */
+    public boolean isRegistered(Callback callback) {
+        return callbacks.contains(callback);
+    }
+
+    /**
+     * Returns the number of registered callbacks.
+     */
+    public int getCallbackCount() {
+        int count = 0;
+        for (int i = 0, size = callbacks.size(); i < size; i++) {
+            if (callbacks.get(i) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Calls all registered callbacks once.
+     *
+     * @param frameTimeNanos The time of the frame in nanoseconds.
+     * @return true if callbacks are still registered after the frame.
+     */
+    public boolean dispatch(long frameTimeNanos) {
+        dispatching = true;
+        // callbacks registered during this pass are picked up on the next frame
+        int count = callbacks.size();
+        try {
+            for (int i = 0; i < count; i++) {
+                Callback callback = callbacks.get(i);
+                if (callback != null && !callback.onAnimationFrame(frameTimeNanos)) {
+                    callbacks.set(i, null);
+                }
+            }
+        } finally {
+            dispatching = false;
+            removeUnregistered();
+        }
+        return !callbacks.isEmpty();
+    }
+
+    /**
+     * Compacts the callback list after callbacks were unregistered during a dispatch.
+     */
+    private void removeUnregistered() {
+        int size = callbacks.size();
+        int target = 0;
+        for (int i = 0; i < size; i++) {
+            Callback callback = callbacks.get(i);
+            if (callback != null) {
+                callbacks.set(target++, callback);
+            }
+        }
+        for (int i = size - 1; i >= target; i--) {
+            callbacks.remove(i);
+        }
+    }
+
+    /**
+     * Callback invoked on every frame while registered.
+     */
+    public interface Callback {
+
+        /**
+         * Called once per frame.
+         *
+         * @param frameTimeNanos The time of the frame in nanoseconds.
+         * @return false to unregister the callback.
+         */
+        boolean onAnimationFrame(long frameTimeNanos);
+    }
+
+}
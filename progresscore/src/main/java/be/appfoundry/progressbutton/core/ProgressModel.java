@@ -0,0 +1,287 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package be.appfoundry.progressbutton.core;
+
+/**
+ * The progress and animation state of a progress button, independent of how it is rendered.
+ * Tracks the progress, the arc it maps to and the indeterminate animation that grows and shrinks
+ * the arc, and remembers the arc that was last drawn to detect visible changes.
+ * <p>
+ * Angles are in degrees. Not thread safe.
+ */
+public class ProgressModel {
+
+    /**
+     * The number of degrees in a full circle.
+     */
+    public static final int MAX_DEGREES = 360;
+
+    private static final float DEFAULT_MAX_PROGRESS = 100f;
+    private static final float DEFAULT_START_DEGREES = 270f;
+    private static final float NANOS_PER_SECOND = 1000000000f;
+
+    /**
+     * The maximum progress. Defaults to 100.
+     */
+    private float maxProgress = DEFAULT_MAX_PROGRESS;
+    /**
+     * The current progress.
+     */
+    private float progress;
+    /**
+     * The amount of degrees for indicating the progress.
+     */
+    private float degrees;
+    /**
+     * The starting position for the progress indicator.
+     */
+    private float startDegrees = DEFAULT_START_DEGREES;
+    /**
+     * The current starting point of the progress indicator.
+     */
+    private float startingPoint = DEFAULT_START_DEGREES;
+    /**
+     * Indicates if the indeterminate animation is shrinking the arc.
+     */
+    private boolean reverse;
+    /**
+     * The starting point of the progress indicator as last drawn.
+     */
+    private float drawnStartingPoint = DEFAULT_START_DEGREES;
+    /**
+     * The degrees of the progress indicator as last drawn.
+     */
+    private float drawnDegrees;
+
+    /**
+     * Returns the maximum progress.
+     */
+    public float getMaxProgress() {
+        return maxProgress;
+    }
+
+    /**
+     * Sets the maximum progress.
+     */
+    public void setMaxProgress(float maxProgress) {
+        this.maxProgress = maxProgress;
+    }
+
+    /**
+     * Returns the current progress.
+     */
+    public float getProgress() {
+        return progress;
+    }
+
+    /**
+     * Sets the current progress. (must be between 0 and maxProgress)
+     */
+    public void setProgress(float progress) {
+        checkProgress(progress);
+        this.progress = progress;
+        degrees = toDegrees(progress);
+    }
+
+    /**
+     * Throws an {@link IllegalArgumentException} if the progress is not between 0 and the maximum
+     * progress.
+     */
+    public void checkProgress(float progress) {
+        if (progress > maxProgress || progress < 0) {
+            throw new IllegalArgumentException(
+                    "Progress (" + progress + ") must be between 0 and " + maxProgress);
+        }
+    }
+
+    /**
+     * Returns the amount of degrees indicating the progress.
+     */
+    public float getDegrees() {
+        return degrees;
+    }
+
+    /**
+     * Returns the starting position for the progress indicator.
+     */
+    public float getStartDegrees() {
+        return startDegrees;
+    }
+
+    /**
+     * Sets the starting position for the progress indicator and moves the indicator there.
+     */
+    public void setStartDegrees(float startDegrees) {
+        this.startDegrees = startDegrees;
+        this.startingPoint = startDegrees;
+    }
+
+    /**
+     * Returns the current starting point of the progress indicator.
+     */
+    public float getStartingPoint() {
+        return startingPoint;
+    }
+
+    /**
+     * Returns true if the indeterminate animation is shrinking the arc.
+     */
+    public boolean isReverse() {
+        return reverse;
+    }
+
+    /**
+     * Sets the progress and the starting point of the indicator, without range checks.
+     */
+    public void setProgressStart(float progress, float startingPoint) {
+        this.progress = progress;
+        this.startingPoint = startingPoint;
+        degrees = toDegrees(progress);
+    }
+
+    /**
+     * Restores a complete animation state, for example one saved earlier.
+     */
+    public void setState(float progress, float startingPoint, boolean reverse) {
+        this.reverse = reverse;
+        setProgressStart(progress, startingPoint);
+    }
+
+    /**
+     * Resets the progress and the indeterminate animation to their initial state.
+     */
+    public void reset() {
+        reverse = false;
+        setProgressStart(0, startDegrees);
+    }
+
+    /**
+     * Advances the indeterminate animation. The arc grows from the starting position until it
+     * covers the full circle, then shrinks from its start until it is empty, and starts over.
+     *
+     * @param step The amount of progress to move.
+     */
+    public void advance(float step) {
+        if (progress >= maxProgress) {
+            reverse = true;
+            startingPoint = startDegrees;
+            progress = maxProgress;
+        } else if (progress <= 0) {
+            reverse = false;
+            startingPoint = startDegrees;
+            progress = 0;
+        }
+        if (reverse) {
+            float degrees1 = toDegrees(progress);
+            progress -= step;
+            float degrees2 = toDegrees(progress);
+            startingPoint += degrees1 - degrees2;
+        } else {
+            progress += step;
+        }
+        degrees = toDegrees(progress);
+    }
+
+    /**
+     * Advances the indeterminate animation by elapsed time.
+     *
+     * @param elapsedNanos     The elapsed time in nanoseconds.
+     * @param degreesPerSecond The speed of the animation.
+     */
+    public void advanceByTime(long elapsedNanos, float degreesPerSecond) {
+        advance(degreesPerSecond * maxProgress / MAX_DEGREES * elapsedNanos / NANOS_PER_SECOND);
+    }
+
+    /**
+     * Advances the indeterminate animation by a possibly long elapsed time, for example the time
+     * the animation was paused. Only the time modulo one grow and shrink cycle is applied, and the
+     * arc turns around at the ends exactly as it would have frame by frame, so the animation
+     * continues in phase with where it would have been had it kept running.
+     *
+     * @param elapsedNanos     The elapsed time in nanoseconds.
+     * @param degreesPerSecond The speed of the animation.
+     */
+    public void advanceInPhase(long elapsedNanos, float degreesPerSecond) {
+        if (maxProgress <= 0 || elapsedNanos <= 0) {
+            return;
+        }
+        double distance = (double) degreesPerSecond * maxProgress / MAX_DEGREES
+                * elapsedNanos / NANOS_PER_SECOND;
+        float remaining = (float) (distance % (2 * maxProgress));
+        while (remaining > 0) {
+            float bound = reverse ? progress : maxProgress - progress;
+            if (bound <= 0) {
+                // turns the arc around at the end
+                advance(0);
+                continue;
+            }
+            float step = Math.min(remaining, bound);
+            advance(step);
+            remaining -= step;
+        }
+    }
+
+    /**
+     * Returns the starting point of the indicator as last drawn.
+     */
+    public float getDrawnStartingPoint() {
+        return drawnStartingPoint;
+    }
+
+    /**
+     * Returns the degrees of the indicator as last drawn.
+     */
+    public float getDrawnDegrees() {
+        return drawnDegrees;
+    }
+
+    /**
+     * Returns true if the start or the end of the indicator moved by at least the given amount
+     * of degrees since it was last drawn.
+     */
+    public boolean hasVisibleChange(float minDegrees) {
+        return Math.abs(getStartDelta()) >= minDegrees || Math.abs(getEndDelta()) >= minDegrees;
+    }
+
+    /**
+     * Returns how far the start of the indicator moved since it was last drawn.
+     */
+    public float getStartDelta() {
+        return startingPoint - drawnStartingPoint;
+    }
+
+    /**
+     * Returns how far the end of the indicator moved since it was last drawn.
+     */
+    public float getEndDelta() {
+        return startingPoint + degrees - drawnStartingPoint - drawnDegrees;
+    }
+
+    /**
+     * Marks the current indicator as drawn.
+     */
+    public void markDrawn() {
+        drawnStartingPoint = startingPoint;
+        drawnDegrees = degrees;
+    }
+
+    private float toDegrees(float value) {
+        return MAX_DEGREES * value / maxProgress;
+    }
+
+}
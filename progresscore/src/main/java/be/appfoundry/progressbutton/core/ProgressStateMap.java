@@ -0,0 +1,237 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package be.appfoundry.progressbutton.core;
+
+import java.util.Arrays;
+
+/**
+ * Map from stable item ids to the progress state of a button: the progress, the starting point,
+ * a few flags and the time the state was saved. Keys and values are stored in parallel primitive
+ * arrays with open addressing, so entries are not boxed: a slot takes 25 bytes and the table is
+ * at least 3/8 full, against well over 100 bytes per entry for a map of boxed values. Not thread
+ * safe.
+ * <p>
+ * Entries are found with {@link #indexOf(long)} and read by index, so reading a state does not
+ * allocate.
+ */
+public final class ProgressStateMap {
+
+    /**
+     * Flag set when the indicator runs counterclockwise.
+     */
+    public static final int FLAG_REVERSE = 1;
+    /**
+     * Flag set when the progress is indeterminate.
+     */
+    public static final int FLAG_INDETERMINATE = 1 << 1;
+    /**
+     * Flag set when the indeterminate animation was running.
+     */
+    public static final int FLAG_ANIMATING = 1 << 2;
+
+    private static final int FLAG_USED = 1 << 6;
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final int INT_BITS = 32;
+    private static final float MAX_LOAD = 0.75f;
+
+    private long[] keys;
+    private float[] progress;
+    private float[] startingPoints;
+    private long[] timesNanos;
+    private byte[] flags;
+    private int size;
+    private int mask;
+
+    /**
+     * Creates an empty map.
+     */
+    public ProgressStateMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty map holding the expected number of entries without growing.
+     */
+    public ProgressStateMap(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * MAX_LOAD < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Returns the number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the index of the entry for an id, or -1 when there is none. The index is valid
+     * until the map is changed.
+     */
+    public int indexOf(long id) {
+        for (int i = slot(id); ; i = (i + 1) & mask) {
+            if (flags[i] == 0) {
+                return -1;
+            }
+            if (keys[i] == id) {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * Returns true if the map has an entry for an id.
+     */
+    public boolean contains(long id) {
+        return indexOf(id) >= 0;
+    }
+
+    /**
+     * Stores the state for an id, replacing the previous one.
+     *
+     * @param id            The stable id of the item.
+     * @param progress      The progress.
+     * @param startingPoint The starting point of the indicator in degrees.
+     * @param stateFlags    A combination of {@link #FLAG_REVERSE}, {@link #FLAG_INDETERMINATE}
+     *                      and {@link #FLAG_ANIMATING}.
+     * @param timeNanos     The time the state was saved, to continue animations in phase.
+     */
+    public void put(long id, float progress, float startingPoint, int stateFlags,
+                    long timeNanos) {
+        int i = slot(id);
+        while (flags[i] != 0 && keys[i] != id) {
+            i = (i + 1) & mask;
+        }
+        if (flags[i] == 0) {
+            if (size + 1 > keys.length * MAX_LOAD) {
+                grow();
+                put(id, progress, startingPoint, stateFlags, timeNanos);
+                return;
+            }
+            size++;
+        }
+        keys[i] = id;
+        this.progress[i] = progress;
+        startingPoints[i] = startingPoint;
+        timesNanos[i] = timeNanos;
+        flags[i] = (byte) (stateFlags | FLAG_USED);
+    }
+
+    /**
+     * Returns the progress of the entry at an index.
+     */
+    public float getProgress(int index) {
+        return progress[index];
+    }
+
+    /**
+     * Returns the starting point of the entry at an index.
+     */
+    public float getStartingPoint(int index) {
+        return startingPoints[index];
+    }
+
+    /**
+     * Returns the flags of the entry at an index.
+     */
+    public int getFlags(int index) {
+        return flags[index] & ~FLAG_USED;
+    }
+
+    /**
+     * Returns the time the entry at an index was saved.
+     */
+    public long getTimeNanos(int index) {
+        return timesNanos[index];
+    }
+
+    /**
+     * Removes the entry for an id.
+     *
+     * @return true if there was an entry.
+     */
+    public boolean remove(long id) {
+        int i = indexOf(id);
+        if (i < 0) {
+            return false;
+        }
+        // shift the following entries of the probe sequence back, so no tombstones are needed
+        int gap = i;
+        for (int j = (gap + 1) & mask; flags[j] != 0; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                move(j, gap);
+                gap = j;
+            }
+        }
+        flags[gap] = 0;
+        size--;
+        return true;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        Arrays.fill(flags, (byte) 0);
+        size = 0;
+    }
+
+    private void move(int from, int to) {
+        keys[to] = keys[from];
+        progress[to] = progress[from];
+        startingPoints[to] = startingPoints[from];
+        timesNanos[to] = timesNanos[from];
+        flags[to] = flags[from];
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        float[] oldProgress = progress;
+        float[] oldStartingPoints = startingPoints;
+        long[] oldTimesNanos = timesNanos;
+        byte[] oldFlags = flags;
+        allocate(oldKeys.length << 1);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldFlags[i] != 0) {
+                put(oldKeys[i], oldProgress[i], oldStartingPoints[i],
+                        oldFlags[i] & ~FLAG_USED, oldTimesNanos[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        progress = new float[capacity];
+        startingPoints = new float[capacity];
+        timesNanos = new long[capacity];
+        flags = new byte[capacity];
+        mask = capacity - 1;
+    }
+
+    private int slot(long id) {
+        long hash = id * HASH_MULTIPLIER;
+        return (int) (hash ^ (hash >>> INT_BITS)) & mask;
+    }
+
+}
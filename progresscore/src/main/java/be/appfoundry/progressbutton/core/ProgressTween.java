@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package be.appfoundry.progressbutton.core;
+
+/**
+ * Moves a progress value toward a target on the frame clock. A new target given while the tween
+ * runs retargets it: it continues from the value reached so far, so the indicator never jumps.
+ * The easing is left to the caller, which maps the linear fraction returned by
+ * {@link #getFraction(long)} through an interpolator and passes the result to
+ * {@link #getValue(float)}. Nothing is allocated per frame.
+ */
+public final class ProgressTween {
+
+    private float from;
+    private float to;
+    private long durationNanos;
+    /**
+     * The frame time the tween started at, 0 when it starts on the next frame.
+     */
+    private long startNanos;
+    /**
+     * The time of the last frame, 0 when not running.
+     */
+    private long lastFrameNanos;
+    private boolean running;
+
+    /**
+     * Starts moving from the current value to a target, or retargets a running tween. The tween
+     * starts at the last frame it was updated on, or on the next frame when it was not running.
+     *
+     * @param current       The value shown now.
+     * @param target        The value to move to.
+     * @param durationNanos The time to reach the target.
+     */
+    public void animateTo(float current, float target, long durationNanos) {
+        from = current;
+        to = target;
+        this.durationNanos = durationNanos;
+        startNanos = running ? lastFrameNanos : 0;
+        running = true;
+    }
+
+    /**
+     * Returns true while the target is not reached.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Returns the value the tween moves to.
+     */
+    public float getTarget() {
+        return to;
+    }
+
+    /**
+     * Stops the tween where it is.
+     */
+    public void cancel() {
+        running = false;
+        lastFrameNanos = 0;
+    }
+
+    /**
+     * Returns the linear fraction of the tween at a frame, between 0 and 1. The tween stops once
+     * the fraction reaches 1.
+     *
+     * @param frameTimeNanos The time of the frame in nanoseconds.
+     */
+    public float getFraction(long frameTimeNanos) {
+        if (startNanos == 0) {
+            startNanos = frameTimeNanos;
+        }
+        lastFrameNanos = frameTimeNanos;
+        long elapsed = frameTimeNanos - startNanos;
+        if (elapsed >= durationNanos) {
+            cancel();
+            return 1f;
+        }
+        return (float) elapsed / durationNanos;
+    }
+
+    /**
+     * Returns the value for an eased fraction: 0 for the start value, 1 for the target.
+     */
+    public float getValue(float fraction) {
+        return from + (to - from) * fraction;
+    }
+
+}
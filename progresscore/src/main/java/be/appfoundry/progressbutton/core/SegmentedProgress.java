@@ -0,0 +1,205 @@
+/*
+ * Copyright 2016 AppFoundry
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package be.appfoundry.progressbutton.core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Progress of a transfer split in segments, for instance a download fetched in parallel ranges.
+ * Every segment has its own counter and its own changed flag on its own cache line, so workers
+ * reporting on different segments never share a lock or a cache line. Reading the total walks
+ * the counters, which is cheap enough to do once per frame.
+ * <p>
+ * Updates can be made from any thread. Only the first update of a segment after
+ * {@link #takeChanged()} notifies the {@link Listener}, so the consumer is woken up at most once
+ * per segment per batch of updates.
+ */
+public final class SegmentedProgress {
+
+    /**
+     * The number of longs between two counters: 64 bytes, one cache line on common hardware.
+     */
+    private static final int STRIDE = 8;
+    /**
+     * The offset of the changed flag of a segment from its counter, on the same cache line.
+     */
+    private static final int CHANGED_OFFSET = 1;
+
+    /**
+     * The counter and the changed flag of every segment, one cache line per segment.
+     */
+    private final AtomicLongArray counters;
+    private final long[] segmentSizes;
+    private final long totalSize;
+    private volatile Listener listener;
+
+    /**
+     * Creates the progress for segments of the given sizes.
+     *
+     * @param segmentSizes The size of every segment, in the unit the workers report in.
+     */
+    public SegmentedProgress(long... segmentSizes) {
+        if (segmentSizes.length == 0) {
+            throw new IllegalArgumentException("At least one segment is required");
+        }
+        long total = 0;
+        for (int i = 0; i < segmentSizes.length; i++) {
+            if (segmentSizes[i] <= 0) {
+                throw new IllegalArgumentException(
+                        "Segment size (" + segmentSizes[i] + ") must be positive");
+            }
+            total += segmentSizes[i];
+        }
+        this.segmentSizes = segmentSizes.clone();
+        this.totalSize = total;
+        // one padding line before the first and after the last counter as well
+        counters = new AtomicLongArray((segmentSizes.length + 2) * STRIDE);
+    }
+
+    /**
+     * Returns the number of segments.
+     */
+    public int getSegmentCount() {
+        return segmentSizes.length;
+    }
+
+    /**
+     * Returns the size of a segment.
+     */
+    public long getSegmentSize(int segment) {
+        return segmentSizes[segment];
+    }
+
+    /**
+     * Returns the sum of all segment sizes.
+     */
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * Adds to the progress of a segment. Can be called from any thread.
+     */
+    public void add(int segment, long delta) {
+        int index = index(segment);
+        counters.addAndGet(index, delta);
+        onChanged(index);
+    }
+
+    /**
+     * Sets the progress of a segment. Can be called from any thread, but a segment should only
+     * be set by one worker at a time.
+     */
+    public void set(int segment, long value) {
+        int index = index(segment);
+        counters.set(index, value);
+        onChanged(index);
+    }
+
+    /**
+     * Returns the progress of a segment, as reported.
+     */
+    public long get(int segment) {
+        return counters.get(index(segment));
+    }
+
+    /**
+     * Returns the completed fraction of a segment, between 0 and 1.
+     */
+    public float getFraction(int segment) {
+        return (float) clamp(segment) / segmentSizes[segment];
+    }
+
+    /**
+     * Returns the progress of all segments together. Every segment counts for at most its size.
+     */
+    public long getTotal() {
+        long total = 0;
+        for (int i = 0; i < segmentSizes.length; i++) {
+            total += clamp(i);
+        }
+        return total;
+    }
+
+    /**
+     * Returns the completed fraction of all segments together, between 0 and 1.
+     */
+    public float getTotalFraction() {
+        return (float) getTotal() / totalSize;
+    }
+
+    /**
+     * Returns true if a segment changed since the last call, and clears the flags. Read the
+     * values after this call: updates racing with it notify the listener again, so none is lost.
+     */
+    public boolean takeChanged() {
+        boolean changed = false;
+        for (int i = 0; i < segmentSizes.length; i++) {
+            int flag = index(i) + CHANGED_OFFSET;
+            // only lines that changed are written, the others stay shared with their worker
+            if (counters.get(flag) != 0 && counters.getAndSet(flag, 0) != 0) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Sets the listener notified of the first update after {@link #takeChanged()}, or null.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    private void onChanged(int index) {
+        int flag = index + CHANGED_OFFSET;
+        // check first, so a worker only writes its flag once per batch
+        if (counters.get(flag) == 0 && counters.compareAndSet(flag, 0, 1)) {
+            Listener listener = this.listener;
+            if (listener != null) {
+                listener.onSegmentsChanged(this);
+            }
+        }
+    }
+
+    private long clamp(int segment) {
+        return Math.max(0, Math.min(get(segment), segmentSizes[segment]));
+    }
+
+    private int index(int segment) {
+        if (segment < 0 || segment >= segmentSizes.length) {
+            throw new IndexOutOfBoundsException(
+                    "Segment " + segment + " out of " + segmentSizes.length);
+        }
+        return (segment + 1) * STRIDE;
+    }
+
+    /**
+     * Listener woken up when the segments change.
+     */
+    public interface Listener {
+
+        /**
+         * Called on the reporting thread by the first update of a segment after
+         * {@link SegmentedProgress#takeChanged()}. Can be called by several workers for the same
+         * batch, at most once per segment.
+         */
+        void onSegmentsChanged(SegmentedProgress progress);
+    }
+
+}
@@ -0,0 +1,37 @@
+package be.appfoundry.progressbutton.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AtomicProgressTest {
+
+    private static final float DELTA = 0.0001f;
+
+    @Test
+    public void offer_coalescesUntilTaken() {
+        AtomicProgress progress = new AtomicProgress();
+        assertTrue(progress.offer(10f));
+        assertFalse(progress.offer(20f));
+
+        assertEquals(20f, progress.take(), DELTA);
+        assertFalse(progress.isPending());
+        assertTrue(progress.offer(30f));
+    }
+
+    @Test
+    public void take_returnsFlagOfLatestValue() {
+        AtomicProgress progress = new AtomicProgress();
+        progress.offer(10f, false);
+        progress.offer(-20.5f, true);
+
+        assertEquals(-20.5f, progress.take(), DELTA);
+        assertTrue(progress.isAnimated());
+
+        progress.offer(30f);
+        assertEquals(30f, progress.take(), DELTA);
+        assertFalse(progress.isAnimated());
+    }
+}
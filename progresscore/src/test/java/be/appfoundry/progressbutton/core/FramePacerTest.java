@@ -0,0 +1,106 @@
+package be.appfoundry.progressbutton.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FramePacerTest {
+
+    private static final float DELTA = 0.001f;
+    private static final long FRAME_60_HZ = 16666667L;
+    private static final long FRAME_120_HZ = 8333333L;
+
+    @Test
+    public void onFrame_updatesEveryFrameOnTime() {
+        FramePacer pacer = new FramePacer(120);
+        long time = FRAME_120_HZ;
+        for (int i = 0; i < 200; i++) {
+            assertTrue(pacer.onFrame(time));
+            time += FRAME_120_HZ;
+        }
+        assertEquals(120, pacer.getUpdateRate(), DELTA);
+    }
+
+    @Test
+    public void onFrame_skipsFramesWhenLate() {
+        FramePacer pacer = new FramePacer(60);
+        long time = FRAME_60_HZ;
+        for (int i = 0; i < 20; i++) {
+            pacer.onFrame(time);
+            time += 3 * FRAME_60_HZ;
+        }
+        assertEquals(FramePacer.MAX_FRAME_SKIP, pacer.getFrameSkip());
+        assertEquals(15, pacer.getUpdateRate(), DELTA);
+
+        // back on time, the pacer updates every fourth frame until it recovers
+        int updates = 0;
+        for (int i = 0; i < 8; i++) {
+            time += FRAME_60_HZ;
+            if (pacer.onFrame(time)) {
+                updates++;
+            }
+        }
+        assertEquals(2, updates);
+    }
+
+    @Test
+    public void onFrame_recoversWhenOnTimeAgain() {
+        FramePacer pacer = new FramePacer(60);
+        long time = FRAME_60_HZ;
+        for (int i = 0; i < 4; i++) {
+            pacer.onFrame(time);
+            time += 2 * FRAME_60_HZ;
+        }
+        assertEquals(2, pacer.getFrameSkip());
+        // the first interval is still late
+        for (int i = 0; i < 61; i++) {
+            pacer.onFrame(time);
+            time += FRAME_60_HZ;
+        }
+        assertEquals(1, pacer.getFrameSkip());
+    }
+
+    @Test
+    public void onFrame_recoversAfterOneSecondAt120Hz() {
+        FramePacer pacer = new FramePacer(120);
+        long time = FRAME_120_HZ;
+        for (int i = 0; i < 4; i++) {
+            pacer.onFrame(time);
+            time += 2 * FRAME_120_HZ;
+        }
+        assertEquals(2, pacer.getFrameSkip());
+        // the first interval is still late; half a second on time is not enough
+        for (int i = 0; i < 61; i++) {
+            pacer.onFrame(time);
+            time += FRAME_120_HZ;
+        }
+        assertEquals(2, pacer.getFrameSkip());
+        // a full second of rounded 120 Hz intervals
+        for (int i = 0; i < 61; i++) {
+            pacer.onFrame(time);
+            time += FRAME_120_HZ;
+        }
+        assertEquals(1, pacer.getFrameSkip());
+    }
+
+    @Test
+    public void reset_doesNotCountThePauseAsLate() {
+        FramePacer pacer = new FramePacer(60);
+        pacer.onFrame(FRAME_60_HZ);
+        pacer.reset();
+        for (int i = 0; i < 3; i++) {
+            pacer.reset();
+            assertTrue(pacer.onFrame(FRAME_60_HZ * 100 * (i + 1)));
+        }
+        assertEquals(1, pacer.getFrameSkip());
+        assertFalse(pacer.onFrame(FRAME_60_HZ * 300 + FRAME_60_HZ / 4));
+    }
+
+    @Test
+    public void setRefreshRate_fallsBackToDefault() {
+        FramePacer pacer = new FramePacer(0);
+        assertEquals(FramePacer.DEFAULT_REFRESH_RATE, pacer.getRefreshRate(), DELTA);
+    }
+}
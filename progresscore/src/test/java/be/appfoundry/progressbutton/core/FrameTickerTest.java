@@ -0,0 +1,88 @@
+package be.appfoundry.progressbutton.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FrameTickerTest {
+
+    @Test
+    public void dispatch_callsEveryCallbackOnce() {
+        FrameTicker ticker = new FrameTicker();
+        CountingCallback first = new CountingCallback(true);
+        CountingCallback second = new CountingCallback(true);
+        ticker.register(first);
+        ticker.register(second);
+        ticker.register(first);
+
+        assertTrue(ticker.dispatch(0));
+        assertEquals(1, first.frames);
+        assertEquals(1, second.frames);
+        assertEquals(2, ticker.getCallbackCount());
+    }
+
+    @Test
+    public void dispatch_dropsCallbacksReturningFalse() {
+        FrameTicker ticker = new FrameTicker();
+        CountingCallback oneShot = new CountingCallback(false);
+        ticker.register(oneShot);
+
+        assertFalse(ticker.dispatch(0));
+        assertFalse(ticker.isRegistered(oneShot));
+        ticker.dispatch(1);
+        assertEquals(1, oneShot.frames);
+    }
+
+    @Test
+    public void unregister_duringDispatch() {
+        final FrameTicker ticker = new FrameTicker();
+        final CountingCallback second = new CountingCallback(true);
+        ticker.register(new FrameTicker.Callback() {
+            @Override
+            public boolean onAnimationFrame(long frameTimeNanos) {
+                ticker.unregister(second);
+                return true;
+            }
+        });
+        ticker.register(second);
+
+        ticker.dispatch(0);
+        assertEquals(0, second.frames);
+        assertEquals(1, ticker.getCallbackCount());
+    }
+
+    @Test
+    public void register_duringDispatch_startsOnNextFrame() {
+        final FrameTicker ticker = new FrameTicker();
+        final CountingCallback late = new CountingCallback(true);
+        ticker.register(new FrameTicker.Callback() {
+            @Override
+            public boolean onAnimationFrame(long frameTimeNanos) {
+                ticker.register(late);
+                return false;
+            }
+        });
+
+        assertTrue(ticker.dispatch(0));
+        assertEquals(0, late.frames);
+        ticker.dispatch(1);
+        assertEquals(1, late.frames);
+    }
+
+    private static class CountingCallback implements FrameTicker.Callback {
+        private final boolean keep;
+        int frames;
+
+        CountingCallback(boolean keep) {
+            this.keep = keep;
+        }
+
+        @Override
+        public boolean onAnimationFrame(long frameTimeNanos) {
+            frames++;
+            return keep;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package be.appfoundry.progressbutton.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProgressModelTest {
+
+    private static final float DELTA = 0.001f;
+
+    @Test
+    public void setProgress_mapsOnDegrees() {
+        ProgressModel model = new ProgressModel();
+        model.setMaxProgress(10);
+        model.setProgress(5);
+        assertEquals(180, model.getDegrees(), DELTA);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setProgress_rejectsValuesAboveMax() {
+        new ProgressModel().setProgress(101);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setProgress_rejectsNegativeValues() {
+        new ProgressModel().setProgress(-1);
+    }
+
+    @Test
+    public void advance_growsThenShrinksFromTheStart() {
+        ProgressModel model = new ProgressModel();
+        model.setStartDegrees(0);
+        for (int i = 0; i < 100; i++) {
+            model.advance(1);
+        }
+        assertEquals(360, model.getDegrees(), DELTA);
+        assertFalse(model.isReverse());
+
+        model.advance(25);
+        assertTrue(model.isReverse());
+        assertEquals(270, model.getDegrees(), DELTA);
+        assertEquals(90, model.getStartingPoint(), DELTA);
+        // the end of the arc stays in place while it shrinks
+        assertEquals(360, model.getStartingPoint() + model.getDegrees(), DELTA);
+
+        model.advance(75);
+        model.advance(1);
+        assertFalse(model.isReverse());
+        assertEquals(0, model.getStartingPoint(), DELTA);
+        assertEquals(3.6f, model.getDegrees(), DELTA);
+    }
+
+    @Test
+    public void advanceByTime_usesDegreesPerSecond() {
+        ProgressModel model = new ProgressModel();
+        model.advanceByTime(500000000L, 180);
+        assertEquals(90, model.getDegrees(), DELTA);
+    }
+
+    @Test
+    public void advanceInPhase_matchesFrameByFrameAdvance() {
+        ProgressModel expected = new ProgressModel();
+        ProgressModel model = new ProgressModel();
+        for (int i = 0; i < 80; i++) {
+            expected.advance(1);
+            model.advance(1);
+        }
+        for (int i = 0; i < 50; i++) {
+            expected.advance(1);
+        }
+        // 360 degrees per second: half a second moves 50 of 100, past the end of the circle
+        model.advanceInPhase(500000000L, 360);
+        assertEquals(expected.getProgress(), model.getProgress(), DELTA);
+        assertEquals(expected.getStartingPoint(), model.getStartingPoint(), DELTA);
+        assertEquals(expected.isReverse(), model.isReverse());
+    }
+
+    @Test
+    public void advanceInPhase_skipsWholeCycles() {
+        ProgressModel model = new ProgressModel();
+        model.advance(30);
+        // one cycle grows and shrinks the arc in two seconds at 360 degrees per second
+        model.advanceInPhase(3600L * 2000000000L, 360);
+        assertEquals(30, model.getProgress(), 0.01f);
+        assertFalse(model.isReverse());
+    }
+
+    @Test
+    public void reset_restoresInitialState() {
+        ProgressModel model = new ProgressModel();
+        model.setStartDegrees(90);
+        model.advance(150);
+        model.advance(10);
+        model.reset();
+        assertEquals(0, model.getProgress(), DELTA);
+        assertEquals(90, model.getStartingPoint(), DELTA);
+        assertFalse(model.isReverse());
+    }
+
+    @Test
+    public void hasVisibleChange_ignoresChangesBelowThreshold() {
+        ProgressModel model = new ProgressModel();
+        model.setMaxProgress(100000);
+        model.markDrawn();
+        model.setProgress(1);
+        assertFalse(model.hasVisibleChange(0.1f));
+        model.setProgress(100);
+        assertTrue(model.hasVisibleChange(0.1f));
+        model.markDrawn();
+        assertFalse(model.hasVisibleChange(0.1f));
+    }
+}
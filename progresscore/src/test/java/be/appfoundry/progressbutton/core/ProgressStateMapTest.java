@@ -0,0 +1,62 @@
+package be.appfoundry.progressbutton.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProgressStateMapTest {
+
+    private static final float DELTA = 0.0001f;
+
+    @Test
+    public void put_storesStateById() {
+        ProgressStateMap map = new ProgressStateMap();
+        map.put(-1L, 25f, 90f, ProgressStateMap.FLAG_REVERSE, 1000L);
+        map.put(Long.MAX_VALUE, 50f, 180f, ProgressStateMap.FLAG_ANIMATING, 2000L);
+        map.put(-1L, 30f, 95f, 0, 3000L);
+
+        assertEquals(2, map.size());
+        int index = map.indexOf(-1L);
+        assertEquals(30f, map.getProgress(index), DELTA);
+        assertEquals(95f, map.getStartingPoint(index), DELTA);
+        assertEquals(0, map.getFlags(index));
+        assertEquals(3000L, map.getTimeNanos(index));
+        index = map.indexOf(Long.MAX_VALUE);
+        assertEquals(ProgressStateMap.FLAG_ANIMATING, map.getFlags(index));
+        assertEquals(-1, map.indexOf(0L));
+    }
+
+    @Test
+    public void put_growsForManyItems() {
+        ProgressStateMap map = new ProgressStateMap();
+        int count = 100000;
+        for (int i = 0; i < count; i++) {
+            map.put(i * 7L, i, 0f, 0, 0L);
+        }
+        assertEquals(count, map.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, map.getProgress(map.indexOf(i * 7L)), DELTA);
+        }
+    }
+
+    @Test
+    public void remove_keepsCollidingEntriesReachable() {
+        ProgressStateMap map = new ProgressStateMap();
+        for (int i = 0; i < 12; i++) {
+            map.put(i, i, 0f, 0, 0L);
+        }
+        for (int i = 0; i < 12; i += 2) {
+            assertTrue(map.remove(i));
+        }
+        assertFalse(map.remove(0));
+        assertEquals(6, map.size());
+        for (int i = 1; i < 12; i += 2) {
+            assertEquals(i, map.getProgress(map.indexOf(i)), DELTA);
+        }
+        for (int i = 0; i < 12; i += 2) {
+            assertFalse(map.contains(i));
+        }
+    }
+}
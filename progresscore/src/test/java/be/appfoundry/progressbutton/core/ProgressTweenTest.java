@@ -0,0 +1,39 @@
+package be.appfoundry.progressbutton.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProgressTweenTest {
+
+    private static final float DELTA = 0.001f;
+    private static final long FRAME = 10L;
+
+    @Test
+    public void getFraction_reachesTargetAfterDuration() {
+        ProgressTween tween = new ProgressTween();
+        tween.animateTo(0f, 100f, 10 * FRAME);
+
+        // the first frame starts the tween
+        assertEquals(0f, tween.getValue(tween.getFraction(FRAME)), DELTA);
+        assertEquals(50f, tween.getValue(tween.getFraction(6 * FRAME)), DELTA);
+        assertTrue(tween.isRunning());
+        assertEquals(100f, tween.getValue(tween.getFraction(11 * FRAME)), DELTA);
+        assertFalse(tween.isRunning());
+    }
+
+    @Test
+    public void animateTo_retargetsFromReachedValue() {
+        ProgressTween tween = new ProgressTween();
+        tween.animateTo(0f, 100f, 10 * FRAME);
+        tween.getFraction(FRAME);
+        float reached = tween.getValue(tween.getFraction(6 * FRAME));
+
+        tween.animateTo(reached, 20f, 10 * FRAME);
+        assertEquals(reached, tween.getValue(tween.getFraction(6 * FRAME)), DELTA);
+        assertEquals(35f, tween.getValue(tween.getFraction(11 * FRAME)), DELTA);
+        assertEquals(20f, tween.getTarget(), DELTA);
+    }
+}
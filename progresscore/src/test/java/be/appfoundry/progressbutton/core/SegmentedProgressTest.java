@@ -0,0 +1,88 @@
+package be.appfoundry.progressbutton.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentedProgressTest {
+
+    private static final float DELTA = 0.0001f;
+
+    @Test
+    public void total_clampsEverySegmentToItsSize() {
+        SegmentedProgress progress = new SegmentedProgress(100, 300);
+        progress.set(0, 150);
+        progress.add(1, 75);
+        assertEquals(400, progress.getTotalSize());
+        assertEquals(175, progress.getTotal());
+        assertEquals(1f, progress.getFraction(0), DELTA);
+        assertEquals(0.25f, progress.getFraction(1), DELTA);
+        assertEquals(175f / 400f, progress.getTotalFraction(), DELTA);
+    }
+
+    @Test
+    public void listener_notifiedOncePerSegmentPerBatch() {
+        final AtomicInteger notifications = new AtomicInteger();
+        SegmentedProgress progress = new SegmentedProgress(10, 10);
+        progress.setListener(new SegmentedProgress.Listener() {
+            @Override
+            public void onSegmentsChanged(SegmentedProgress progress) {
+                notifications.incrementAndGet();
+            }
+        });
+        progress.add(0, 1);
+        progress.add(0, 1);
+        assertEquals(1, notifications.get());
+        progress.add(1, 1);
+        progress.add(0, 1);
+        assertEquals(2, notifications.get());
+        assertTrue(progress.takeChanged());
+        assertFalse(progress.takeChanged());
+        progress.add(1, 1);
+        assertEquals(3, notifications.get());
+        assertTrue(progress.takeChanged());
+    }
+
+    @Test
+    public void add_fromManyThreads() throws InterruptedException {
+        final int workers = 8;
+        final int perWorker = 10000;
+        long[] sizes = new long[workers];
+        for (int i = 0; i < workers; i++) {
+            sizes[i] = perWorker;
+        }
+        final SegmentedProgress progress = new SegmentedProgress(sizes);
+        Thread[] threads = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            final int segment = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < perWorker; j++) {
+                        progress.add(segment, 1);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(workers * perWorker, progress.getTotal());
+        assertEquals(1f, progress.getTotalFraction(), DELTA);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsEmptySegments() {
+        new SegmentedProgress(100, 0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void add_rejectsUnknownSegment() {
+        new SegmentedProgress(100).add(1, 1);
+    }
+}